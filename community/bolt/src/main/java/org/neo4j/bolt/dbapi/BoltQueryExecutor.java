@@ -19,6 +19,7 @@
  */
 package org.neo4j.bolt.dbapi;
 
+import org.neo4j.bolt.runtime.BoltResult;
 import org.neo4j.kernel.impl.query.QueryExecutionKernelException;
 import org.neo4j.kernel.impl.query.QuerySubscriber;
 import org.neo4j.values.virtual.MapValue;
@@ -26,4 +27,8 @@ import org.neo4j.values.virtual.MapValue;
 public interface BoltQueryExecutor
 {
     BoltQueryExecution executeQuery( String query, MapValue parameters, boolean prePopulate, QuerySubscriber subscriber ) throws QueryExecutionKernelException;
+
+    // TAG: Lazy Implementation
+    /* Enqueue the query into the lazy batcher of the transaction, its rows are streamed as propagation produces them */
+    BoltResult executeLazyQuery( String query, MapValue parameters );
 }
@@ -21,6 +21,7 @@ package org.neo4j.bolt.dbapi.impl;
 
 import org.neo4j.bolt.dbapi.BoltQueryExecution;
 import org.neo4j.bolt.dbapi.BoltQueryExecutor;
+import org.neo4j.bolt.runtime.BoltResult;
 import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.kernel.impl.query.QueryExecution;
 import org.neo4j.kernel.impl.query.QueryExecutionEngine;
@@ -53,6 +54,12 @@ public class BoltQueryExecutorImpl implements BoltQueryExecutor
         return new BoltQueryExecutionImpl( queryExecution, transactionalContext );
     }
 
+    @Override
+    public BoltResult executeLazyQuery( String query, MapValue parameters )
+    {
+        return new LazyBoltResult( internalTransaction, query, parameters );
+    }
+
     private static class BoltQueryExecutionImpl implements BoltQueryExecution
     {
         private final QueryExecution queryExecution;
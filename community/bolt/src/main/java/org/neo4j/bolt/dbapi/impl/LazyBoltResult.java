@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bolt.dbapi.impl;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.neo4j.bolt.runtime.BoltResult;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.impl.util.DefaultValueMapper;
+import org.neo4j.kernel.impl.util.ValueUtils;
+import org.neo4j.values.AnyValue;
+import org.neo4j.values.virtual.MapValue;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.neo4j.bolt.v4.messaging.AbstractStreamingMessage.STREAM_LIMIT_UNLIMITED;
+
+// TAG: Lazy Implementation
+/**
+ * Result of a deferred RUN, executed by the lazy batcher of the transaction. Rows are queued by whichever thread
+ * propagates the query, as they are produced. A PULL, sized or not, hands over the rows queued so far and waits for
+ * more for at most {@link #PULL_WAIT_MILLIS}, then reports more records until the query has completed, so the worker
+ * isn't held for the whole query. While waiting it propagates the transaction's batches itself if the transaction has
+ * no propagation workers, and otherwise parks until a row arrives or the query completes. A query that failed fails
+ * the PULL that reaches its end. Closing the result cancels the query.
+ */
+public class LazyBoltResult implements BoltResult, Result.ResultVisitor<RuntimeException>
+{
+    static final long PULL_WAIT_MILLIS = 100;
+    // Longest a PULL parks before forming batches again, so a query waiting for partners is still batched
+    static final long PARK_MILLIS = 5;
+
+    private final InternalTransaction transaction;
+    private final long operationNum;
+    private final CompletableFuture<?> completion;
+    private String[] fieldNames;
+    private final ConcurrentLinkedQueue<AnyValue[]> rows = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile boolean cancelled;
+
+    @SuppressWarnings( "unchecked" )
+    LazyBoltResult( InternalTransaction transaction, String query, MapValue parameters )
+    {
+        this.transaction = transaction;
+        Map<String,Object> params = (Map<String,Object>) parameters.map( new DefaultValueMapper( transaction ) );
+        // The columns are known before any row is visited, while the query may already be batched or completed
+        // by the time lazyExecute returns
+        this.operationNum = transaction.lazyExecute( query, params, this,
+                columns -> this.fieldNames = columns.toArray( new String[0] ) );
+        this.completion = transaction.lazyCompletion( operationNum );
+        this.completion.whenComplete( ( ignored, failure ) -> signal() );
+    }
+
+    @Override
+    public boolean visit( Result.ResultRow row )
+    {
+        if ( cancelled )
+        {
+            return false;
+        }
+        AnyValue[] values = new AnyValue[fieldNames.length];
+        for ( int i = 0; i < fieldNames.length; i++ )
+        {
+            values[i] = ValueUtils.of( row.get( fieldNames[i] ) );
+        }
+        rows.add( values );
+        signal();
+        return true;
+    }
+
+    @Override
+    public String[] fieldNames()
+    {
+        return fieldNames;
+    }
+
+    @Override
+    public boolean handleRecords( RecordConsumer recordConsumer, long size ) throws Throwable
+    {
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos( PULL_WAIT_MILLIS );
+        long left = size == STREAM_LIMIT_UNLIMITED ? Long.MAX_VALUE : size;
+        while ( left > 0 )
+        {
+            // Read before the queue, rows are all queued by the time the query has completed
+            boolean completed = completion.isDone();
+            AnyValue[] values = rows.poll();
+            if ( values != null )
+            {
+                recordConsumer.beginRecord( values.length );
+                for ( AnyValue value : values )
+                {
+                    recordConsumer.consumeField( value );
+                }
+                recordConsumer.endRecord();
+                left--;
+            }
+            else if ( completed || System.nanoTime() - deadline >= 0 )
+            {
+                break;
+            }
+            else
+            {
+                propagateOrPark( deadline );
+            }
+        }
+        if ( completion.isDone() && rows.isEmpty() )
+        {
+            rethrowFailure();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean discardRecords( DiscardingRecordConsumer recordConsumer, long size )
+    {
+        close();
+        rows.clear();
+        return false;
+    }
+
+    @Override
+    public void close()
+    {
+        cancelled = true;
+        transaction.lazyCancel( operationNum );
+    }
+
+    private void propagateOrPark( long deadline ) throws InterruptedException
+    {
+        // Forms batches, and without workers propagates a stride of the oldest batch on this thread
+        transaction.lazyPropagate();
+        if ( !transaction.isPropagating() && transaction.batchedOperationsRemaining() > 0 )
+        {
+            return;
+        }
+        lock.lock();
+        try
+        {
+            long wait = Math.min( deadline - System.nanoTime(), MILLISECONDS.toNanos( PARK_MILLIS ) );
+            if ( wait > 0 && rows.isEmpty() && !completion.isDone() )
+            {
+                changed.awaitNanos( wait );
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void signal()
+    {
+        lock.lock();
+        try
+        {
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // A cancelled query just has no more records
+    private void rethrowFailure() throws Throwable
+    {
+        try
+        {
+            completion.getNow( null );
+        }
+        catch ( CompletionException e )
+        {
+            throw e.getCause();
+        }
+        catch ( CancellationException e )
+        {
+            // closed or cancelled, not a failure of the query
+        }
+    }
+}
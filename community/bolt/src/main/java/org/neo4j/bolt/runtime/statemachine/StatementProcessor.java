@@ -40,6 +40,13 @@ public interface StatementProcessor
     StatementMetadata run( String statement, MapValue params, List<Bookmark> bookmarks, Duration txTimeout, AccessMode accessMode,
             Map<String,Object> txMetaData ) throws KernelException;
 
+    // TAG: Lazy Implementation
+    /* A deferred statement is enqueued into the lazy batcher rather than executed right away */
+    StatementMetadata run( String statement, MapValue params, boolean deferred ) throws KernelException;
+
+    StatementMetadata run( String statement, MapValue params, List<Bookmark> bookmarks, Duration txTimeout, AccessMode accessMode,
+            Map<String,Object> txMetaData, boolean deferred ) throws KernelException;
+
     Bookmark streamResult( int statementId, ResultConsumer resultConsumer ) throws Throwable;
 
     Bookmark commitTransaction() throws KernelException;
@@ -79,6 +86,19 @@ public interface StatementProcessor
             throw new UnsupportedOperationException( "Unable to run statements" );
         }
 
+        @Override
+        public StatementMetadata run( String statement, MapValue params, boolean deferred )
+        {
+            throw new UnsupportedOperationException( "Unable to run statements" );
+        }
+
+        @Override
+        public StatementMetadata run( String statement, MapValue params, List<Bookmark> bookmarks, Duration txTimeout, AccessMode accessMode,
+                Map<String,Object> txMetaData, boolean deferred )
+        {
+            throw new UnsupportedOperationException( "Unable to run statements" );
+        }
+
         @Override
         public Bookmark streamResult( int statementId, ResultConsumer resultConsumer )
         {
@@ -45,6 +45,10 @@ public interface TransactionStateMachineSPI
 
     BoltResultHandle executeQuery( BoltQueryExecutor boltQueryExecutor, String statement, MapValue params );
 
+    // TAG: Lazy Implementation
+    /* Execute the query in the lazy batcher, for a RUN with the deferred flag */
+    BoltResultHandle executeDeferredQuery( BoltQueryExecutor boltQueryExecutor, String statement, MapValue params );
+
     boolean supportsNestedStatementsInTransaction();
 
     void transactionClosed();
@@ -95,6 +95,37 @@ public abstract class AbstractTransactionStateMachineSPI implements TransactionS
         return newBoltResultHandle( statement, params, boltQueryExecutor );
     }
 
+    @Override
+    public BoltResultHandle executeDeferredQuery( BoltQueryExecutor boltQueryExecutor, String statement, MapValue params )
+    {
+        return new BoltResultHandle()
+        {
+            private BoltResult result;
+
+            @Override
+            public BoltResult start()
+            {
+                result = boltQueryExecutor.executeLazyQuery( statement, params );
+                return result;
+            }
+
+            @Override
+            public void close( boolean success )
+            {
+                if ( result != null )
+                {
+                    result.close();
+                }
+            }
+
+            @Override
+            public void terminate()
+            {
+                close( false );
+            }
+        };
+    }
+
     @Override
     public boolean supportsNestedStatementsInTransaction()
     {
@@ -86,6 +86,27 @@ public class TransactionStateMachine implements StatementProcessor
         return metadata;
     }
 
+    @Override
+    public StatementMetadata run( String statement, MapValue params, boolean deferred ) throws KernelException
+    {
+        return run( statement, params, List.of(), null, AccessMode.WRITE, Map.of(), deferred );
+    }
+
+    @Override
+    public StatementMetadata run( String statement, MapValue params, List<Bookmark> bookmarks, Duration txTimeout, AccessMode accessMode,
+            Map<String,Object> txMetaData, boolean deferred ) throws KernelException
+    {
+        ctx.deferred = deferred;
+        try
+        {
+            return run( statement, params, bookmarks, txTimeout, accessMode, txMetaData );
+        }
+        finally
+        {
+            ctx.deferred = false;
+        }
+    }
+
     @Override
     public Bookmark streamResult( int statementId, ResultConsumer resultConsumer ) throws Throwable
     {
@@ -213,7 +234,7 @@ public class TransactionStateMachine implements StatementProcessor
 
                             BoltQueryExecutor boltQueryExecutor = ctx.currentTransaction;
 
-                            BoltResultHandle resultHandle = spi.executeQuery( boltQueryExecutor, statement, params);
+                            BoltResultHandle resultHandle = executeQuery( ctx, spi, boltQueryExecutor, statement, params );
                             BoltResult result = startExecution( resultHandle );
                             ctx.statementOutcomes.put( statementId, new StatementOutcome( resultHandle, result ) );
 
@@ -326,7 +347,7 @@ public class TransactionStateMachine implements StatementProcessor
                             // generate real statement ID only when nested statements in transaction are supported
                             int statementId = spi.supportsNestedStatementsInTransaction() ? ctx.nextStatementId() : StatementMetadata.ABSENT_QUERY_ID;
 
-                            BoltResultHandle resultHandle = spi.executeQuery( ctx.currentTransaction, statement, params);
+                            BoltResultHandle resultHandle = executeQuery( ctx, spi, ctx.currentTransaction, statement, params );
                             BoltResult result = startExecution( resultHandle );
                             ctx.statementOutcomes.put( statementId, new StatementOutcome( resultHandle, result ) );
 
@@ -527,6 +548,12 @@ public class TransactionStateMachine implements StatementProcessor
             }
         }
 
+        BoltResultHandle executeQuery( MutableTransactionState ctx, TransactionStateMachineSPI spi, BoltQueryExecutor boltQueryExecutor,
+                String statement, MapValue params )
+        {
+            return ctx.deferred ? spi.executeDeferredQuery( boltQueryExecutor, statement, params ) : spi.executeQuery( boltQueryExecutor, statement, params );
+        }
+
         BoltResult startExecution( BoltResultHandle resultHandle ) throws KernelException
         {
             try
@@ -568,6 +595,9 @@ public class TransactionStateMachine implements StatementProcessor
 
         StatementMetadata lastStatementMetadata;
 
+        /** Whether the statement being run goes to the lazy batcher */
+        boolean deferred;
+
         MutableTransactionState( AuthenticationResult authenticationResult, Clock clock )
         {
             this.clock = clock;
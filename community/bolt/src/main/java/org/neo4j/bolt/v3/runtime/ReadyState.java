@@ -86,7 +86,7 @@ public class ReadyState extends FailSafeBoltStateMachineState
         long start = context.clock().millis();
         StatementProcessor statementProcessor = getStatementProcessor( message, context );
         StatementMetadata statementMetadata = statementProcessor.run( message.statement(), message.params(), message.bookmarks(), message.transactionTimeout(),
-                message.getAccessMode(), message.transactionMetadata() );
+                message.getAccessMode(), message.transactionMetadata(), isDeferred( message ) );
         long end = context.clock().millis();
 
         context.connectionState().onMetadata( FIELDS_KEY, stringArray( statementMetadata.fieldNames() ) );
@@ -110,6 +110,13 @@ public class ReadyState extends FailSafeBoltStateMachineState
         super.assertInitialized();
     }
 
+    // TAG: Lazy Implementation
+    // Deferred statements go to the lazy batcher, a flag of the RUN message from bolt v4 on
+    protected boolean isDeferred( RunMessage message )
+    {
+        return false;
+    }
+
     protected StatementProcessor getStatementProcessor( TransactionInitiatingMessage message, StateMachineContext context )
             throws BoltProtocolBreachFatality, BoltIOException
     {
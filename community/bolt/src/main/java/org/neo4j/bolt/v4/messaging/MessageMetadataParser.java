@@ -22,6 +22,7 @@ package org.neo4j.bolt.v4.messaging;
 import org.neo4j.bolt.messaging.BoltIOException;
 import org.neo4j.kernel.api.exceptions.Status;
 import org.neo4j.values.AnyValue;
+import org.neo4j.values.storable.BooleanValue;
 import org.neo4j.values.storable.StringValue;
 import org.neo4j.values.storable.Values;
 import org.neo4j.values.virtual.MapValue;
@@ -30,6 +31,7 @@ public final class MessageMetadataParser
 {
     public static final String DB_NAME_KEY = "db";
     public static final String ABSENT_DB_NAME = "";
+    public static final String DEFERRED_KEY = "deferred";
 
     /**
      * Empty or null value indicates the default database is selected
@@ -50,4 +52,25 @@ public final class MessageMetadataParser
             throw new BoltIOException( Status.Request.Invalid, "Expecting database name value to be a String value, but got: " + anyValue );
         }
     }
+
+    // TAG: Lazy Implementation
+    /**
+     * Absent means the statement is executed right away rather than by the lazy batcher
+     */
+    static boolean parseDeferred( MapValue meta ) throws BoltIOException
+    {
+        AnyValue anyValue = meta.get( DEFERRED_KEY );
+        if ( anyValue == Values.NO_VALUE )
+        {
+            return false;
+        }
+        else if ( anyValue instanceof BooleanValue )
+        {
+            return ((BooleanValue) anyValue).booleanValue();
+        }
+        else
+        {
+            throw new BoltIOException( Status.Request.Invalid, "Expecting deferred value to be a Boolean value, but got: " + anyValue );
+        }
+    }
 }
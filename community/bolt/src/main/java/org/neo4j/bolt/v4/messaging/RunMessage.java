@@ -33,6 +33,7 @@ import static org.neo4j.bolt.v4.messaging.MessageMetadataParser.ABSENT_DB_NAME;
 public class RunMessage extends org.neo4j.bolt.v3.messaging.request.RunMessage
 {
     private final String databaseName;
+    private final boolean deferred;
 
     public RunMessage( String statement )
     {
@@ -51,13 +52,26 @@ public class RunMessage extends org.neo4j.bolt.v3.messaging.request.RunMessage
 
     public RunMessage( String statement, MapValue params, MapValue meta, List<Bookmark> bookmarks, Duration txTimeout, AccessMode accessMode,
             Map<String,Object> txMetadata, String databaseName )
+    {
+        this( statement, params, meta, bookmarks, txTimeout, accessMode, txMetadata, databaseName, false );
+    }
+
+    public RunMessage( String statement, MapValue params, MapValue meta, List<Bookmark> bookmarks, Duration txTimeout, AccessMode accessMode,
+            Map<String,Object> txMetadata, String databaseName, boolean deferred )
     {
         super( statement, params, meta, bookmarks, txTimeout, accessMode, txMetadata );
         this.databaseName = databaseName;
+        this.deferred = deferred;
     }
 
     public String databaseName()
     {
         return databaseName;
     }
+
+    // TAG: Lazy Implementation
+    public boolean deferred()
+    {
+        return deferred;
+    }
 }
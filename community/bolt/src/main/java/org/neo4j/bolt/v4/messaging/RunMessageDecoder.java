@@ -43,7 +43,8 @@ public class RunMessageDecoder extends org.neo4j.bolt.v3.messaging.decoder.RunMe
             AccessMode accessMode, Map<String,Object> txMetadata ) throws BoltIOException
     {
         var databaseName = MessageMetadataParser.parseDatabaseName( meta );
-        return new RunMessage( statement, params, meta, bookmarks, txTimeout, accessMode, txMetadata, databaseName ); // v4 RUN message
+        var deferred = MessageMetadataParser.parseDeferred( meta );
+        return new RunMessage( statement, params, meta, bookmarks, txTimeout, accessMode, txMetadata, databaseName, deferred ); // v4 RUN message
     }
 }
 
@@ -27,8 +27,8 @@ import org.neo4j.bolt.runtime.statemachine.StatementMetadata;
 import org.neo4j.bolt.runtime.statemachine.StatementProcessor;
 import org.neo4j.bolt.v3.messaging.request.CommitMessage;
 import org.neo4j.bolt.v3.messaging.request.RollbackMessage;
-import org.neo4j.bolt.v3.messaging.request.RunMessage;
 import org.neo4j.bolt.messaging.ResultConsumer;
+import org.neo4j.bolt.v4.messaging.RunMessage;
 import org.neo4j.exceptions.KernelException;
 import org.neo4j.values.storable.Values;
 
@@ -78,7 +78,8 @@ public class InTransactionState extends AbstractStreamingState
     {
         long start = context.clock().millis();
         StatementProcessor statementProcessor = context.connectionState().getStatementProcessor();
-        StatementMetadata statementMetadata = statementProcessor.run( message.statement(), message.params() );
+        // TAG: Lazy Implementation
+        StatementMetadata statementMetadata = statementProcessor.run( message.statement(), message.params(), message.deferred() );
         long end = context.clock().millis();
 
         context.connectionState().onMetadata( FIELDS_KEY, stringArray( statementMetadata.fieldNames() ) );
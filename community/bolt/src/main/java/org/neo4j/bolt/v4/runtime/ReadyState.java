@@ -49,6 +49,12 @@ public class ReadyState extends org.neo4j.bolt.v3.runtime.ReadyState
         return null;
     }
 
+    @Override
+    protected boolean isDeferred( org.neo4j.bolt.v3.messaging.request.RunMessage message )
+    {
+        return message instanceof RunMessage && ((RunMessage) message).deferred();
+    }
+
     @Override
     protected StatementProcessor getStatementProcessor( TransactionInitiatingMessage message, StateMachineContext context )
             throws BoltProtocolBreachFatality, BoltIOException
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.bolt.dbapi.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.neo4j.bolt.runtime.BoltResult;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.values.AnyValue;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.neo4j.bolt.v4.messaging.AbstractStreamingMessage.STREAM_LIMIT_UNLIMITED;
+import static org.neo4j.values.storable.Values.longValue;
+import static org.neo4j.values.virtual.VirtualValues.EMPTY_MAP;
+
+class LazyBoltResultTest
+{
+    private final InternalTransaction transaction = mock( InternalTransaction.class );
+    private final CompletableFuture<Object> completion = new CompletableFuture<>();
+    private final RecordingConsumer records = new RecordingConsumer();
+    private Result.ResultVisitor<?> visitor;
+
+    @Test
+    void shouldFailThePullOfAQueryThatFailsMidStream() throws Throwable
+    {
+        // given a query that produces two rows and then fails, propagated on the bolt thread
+        RuntimeException failure = new RuntimeException( "/ by zero" );
+        LazyBoltResult result = lazyResult();
+        when( transaction.batchedOperationsRemaining() ).thenReturn( 1 );
+        propagateSteps( () -> visit( 1 ), () -> visit( 2 ), () -> completion.completeExceptionally( failure ) );
+
+        // then the rows produced are handed over, and the failure fails the pull instead of ending the stream
+        Throwable thrown = assertThrows( Throwable.class, () -> pullAll( result, STREAM_LIMIT_UNLIMITED ) );
+        assertSame( failure, thrown );
+        assertEquals( List.of( longValue( 1 ), longValue( 2 ) ), records.values );
+    }
+
+    @Test
+    void shouldFailTheSizedPullThatReachesTheFailure() throws Throwable
+    {
+        // given
+        RuntimeException failure = new RuntimeException( "/ by zero" );
+        LazyBoltResult result = lazyResult();
+        when( transaction.batchedOperationsRemaining() ).thenReturn( 1 );
+        propagateSteps( () -> visit( 1 ), () -> completion.completeExceptionally( failure ) );
+
+        // then the row is handed over before the failure fails a pull
+        assertSame( failure, assertThrows( Throwable.class, () -> pullAll( result, 1 ) ) );
+        assertEquals( List.of( longValue( 1 ) ), records.values );
+    }
+
+    @Test
+    void shouldEndTheStreamOnceTheQueryCompleted() throws Throwable
+    {
+        // given
+        LazyBoltResult result = lazyResult();
+        when( transaction.batchedOperationsRemaining() ).thenReturn( 1 );
+        propagateSteps( () -> visit( 1 ), () -> completion.complete( null ) );
+
+        // then
+        pullAll( result, STREAM_LIMIT_UNLIMITED );
+        assertEquals( List.of( longValue( 1 ) ), records.values );
+        assertFalse( result.handleRecords( records, STREAM_LIMIT_UNLIMITED ) );
+    }
+
+    @Test
+    void shouldParkWhileWorkersPropagate() throws Throwable
+    {
+        // given a transaction whose workers produce a row a while after the pull starts
+        LazyBoltResult result = lazyResult();
+        when( transaction.isPropagating() ).thenReturn( true );
+        CompletableFuture<Void> worker = CompletableFuture.runAsync( () ->
+        {
+            sleep( 30 );
+            visit( 1 );
+        } );
+
+        // when
+        while ( records.values.isEmpty() )
+        {
+            assertTrue( result.handleRecords( records, 1 ) );
+        }
+
+        // then the pull waited for the row instead of spinning on lazyPropagate
+        worker.join();
+        assertEquals( List.of( longValue( 1 ) ), records.values );
+        verify( transaction, atMost( 50 ) ).lazyPropagate();
+    }
+
+    @Test
+    void shouldCapAPullOfAllRecords() throws Throwable
+    {
+        // given a query that produces no rows for now
+        LazyBoltResult result = lazyResult();
+        when( transaction.isPropagating() ).thenReturn( true );
+
+        // when
+        long start = System.nanoTime();
+        boolean more = result.handleRecords( records, STREAM_LIMIT_UNLIMITED );
+
+        // then the pull returns after its wait and reports more records
+        assertTrue( more );
+        assertThat( (System.nanoTime() - start) / 1_000_000, lessThan( 10 * LazyBoltResult.PULL_WAIT_MILLIS ) );
+        assertTrue( records.values.isEmpty() );
+    }
+
+    // Pulls until there are no more records, each pull waits for rows for a while at most
+    private void pullAll( LazyBoltResult result, long size ) throws Throwable
+    {
+        for ( int pulls = 0; result.handleRecords( records, size ); pulls++ )
+        {
+            assertThat( pulls, lessThan( 100 ) );
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private LazyBoltResult lazyResult()
+    {
+        when( transaction.lazyExecute( anyString(), anyMap(), any( Result.ResultVisitor.class ), any( Consumer.class ) ) ).thenAnswer( invocation ->
+        {
+            visitor = invocation.getArgument( 2 );
+            invocation.<Consumer<List<String>>>getArgument( 3 ).accept( singletonList( "n" ) );
+            return 0L;
+        } );
+        doAnswer( invocation -> completion ).when( transaction ).lazyCompletion( anyLong() );
+        return new LazyBoltResult( transaction, "UNWIND [1, 2, 0] AS x RETURN 2 / x AS n", EMPTY_MAP );
+    }
+
+    // Each lazyPropagate on the bolt thread takes the next step
+    private void propagateSteps( Runnable... steps )
+    {
+        int[] next = {0};
+        when( transaction.lazyPropagate() ).thenAnswer( invocation ->
+        {
+            if ( next[0] < steps.length )
+            {
+                steps[next[0]++].run();
+            }
+            return !completion.isDone();
+        } );
+    }
+
+    private void visit( long n )
+    {
+        Result.ResultRow row = mock( Result.ResultRow.class );
+        when( row.get( "n" ) ).thenReturn( n );
+        try
+        {
+            visitor.visit( row );
+        }
+        catch ( Exception e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    private static void sleep( long millis )
+    {
+        try
+        {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingConsumer implements BoltResult.RecordConsumer
+    {
+        final List<AnyValue> values = new ArrayList<>();
+
+        @Override
+        public void addMetadata( String key, AnyValue value )
+        {
+        }
+
+        @Override
+        public void beginRecord( int numberOfFields )
+        {
+        }
+
+        @Override
+        public void consumeField( AnyValue value )
+        {
+            values.add( value );
+        }
+
+        @Override
+        public void endRecord()
+        {
+        }
+
+        @Override
+        public void onError()
+        {
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InOrder;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -52,6 +53,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -427,6 +429,50 @@ class TransactionStateMachineTest
         verify( transaction, never() ).markForTermination( any() );
     }
 
+    @Test
+    void shouldPullTheRowsOfADeferredRunFromItsDeferredQuery() throws Throwable
+    {
+        BoltResult result = mock( BoltResult.class );
+        BoltResultHandle resultHandle = mock( BoltResultHandle.class );
+        when( resultHandle.start() ).thenReturn( result );
+        TransactionStateMachineSPI stateMachineSPI = newTransactionStateMachineSPI( newTransaction() );
+        when( stateMachineSPI.executeDeferredQuery( any(), anyString(), any() ) ).thenReturn( resultHandle );
+        TransactionStateMachine stateMachine = newTransactionStateMachine( stateMachineSPI );
+
+        stateMachine.run( "SOME STATEMENT", EMPTY_MAP, true );
+
+        verify( stateMachineSPI ).executeDeferredQuery( any( BoltQueryExecutor.class ), eq( "SOME STATEMENT" ), eq( EMPTY_MAP ) );
+        verify( stateMachineSPI, never() ).executeQuery( any(), anyString(), any() );
+
+        RecordingResultConsumer consumer = new RecordingResultConsumer();
+        stateMachine.streamResult( StatementMetadata.ABSENT_QUERY_ID, consumer );
+
+        assertThat( consumer.consumed, equalTo( List.of( result ) ) );
+        verify( result ).close();
+        verify( resultHandle ).close( true );
+        assertThat( stateMachine.ctx.statementOutcomes.entrySet(), hasSize( 0 ) );
+    }
+
+    @Test
+    void shouldRunStatementsAfterADeferredRunImmediately() throws Throwable
+    {
+        BoltTransaction transaction = newTransaction();
+        TransactionStateMachineSPI stateMachineSPI = newTransactionStateMachineSPI( transaction );
+        BoltResultHandle deferredHandle = newResultHandle();
+        when( stateMachineSPI.executeDeferredQuery( any(), anyString(), any() ) ).thenReturn( deferredHandle );
+        TransactionStateMachine stateMachine = newTransactionStateMachine( stateMachineSPI );
+
+        beginTx( stateMachine );
+        stateMachine.run( "DEFERRED STATEMENT", EMPTY_MAP, true );
+        stateMachine.streamResult( StatementMetadata.ABSENT_QUERY_ID, EMPTY );
+        stateMachine.run( "SOME STATEMENT", EMPTY_MAP );
+
+        InOrder inOrder = inOrder( stateMachineSPI );
+        inOrder.verify( stateMachineSPI ).executeDeferredQuery( any( BoltQueryExecutor.class ), eq( "DEFERRED STATEMENT" ), eq( EMPTY_MAP ) );
+        inOrder.verify( stateMachineSPI ).executeQuery( any( BoltQueryExecutor.class ), eq( "SOME STATEMENT" ), eq( EMPTY_MAP ) );
+        assertFalse( stateMachine.ctx.deferred );
+    }
+
     private static void beginTx( TransactionStateMachine stateMachine ) throws KernelException
     {
         stateMachine.beginTransaction( null, null, AccessMode.WRITE, Map.of() );
@@ -501,6 +547,17 @@ class TransactionStateMachineTest
         return resultHandle;
     }
 
+    private static class RecordingResultConsumer extends EmptyResultConsumer
+    {
+        final List<BoltResult> consumed = new ArrayList<>();
+
+        @Override
+        public void consume( BoltResult boltResult )
+        {
+            consumed.add( boltResult );
+        }
+    }
+
     private static class EmptyResultConsumer implements ResultConsumer
     {
         @Override
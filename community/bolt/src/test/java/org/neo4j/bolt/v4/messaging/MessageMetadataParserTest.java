@@ -25,10 +25,13 @@ import org.neo4j.bolt.messaging.BoltIOException;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.neo4j.bolt.v4.messaging.MessageMetadataParser.ABSENT_DB_NAME;
+import static org.neo4j.bolt.v4.messaging.MessageMetadataParser.DEFERRED_KEY;
 import static org.neo4j.bolt.v4.messaging.MessageMetadataParser.parseDatabaseName;
+import static org.neo4j.bolt.v4.messaging.MessageMetadataParser.parseDeferred;
 import static org.neo4j.internal.helpers.collection.MapUtil.map;
 import static org.neo4j.kernel.impl.util.ValueUtils.asMapValue;
 import static org.neo4j.values.virtual.VirtualValues.EMPTY_MAP;
@@ -57,4 +60,26 @@ class MessageMetadataParserTest
 
         assertTrue( e.causesFailureMessage() );
     }
+
+    @Test
+    void noDeferredShouldDefaultToFalse() throws Exception
+    {
+        assertFalse( parseDeferred( EMPTY_MAP ) );
+    }
+
+    @Test
+    void shouldParseDeferred() throws Exception
+    {
+        assertTrue( parseDeferred( asMapValue( map( DEFERRED_KEY, true ) ) ) );
+        assertFalse( parseDeferred( asMapValue( map( DEFERRED_KEY, false ) ) ) );
+    }
+
+    @Test
+    void shouldThrowForIncorrectDeferred()
+    {
+        BoltIOException e = assertThrows( BoltIOException.class,
+                () -> parseDeferred( asMapValue( map( DEFERRED_KEY, "true" ) ) ) );
+
+        assertTrue( e.causesFailureMessage() );
+    }
 }
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.javacompat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.neo4j.cypher.internal.runtime.interpreted.LazyPartitionedNodeIterator;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Iterators;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.extension.ImpermanentDbmsExtension;
+import org.neo4j.test.extension.Inject;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+   Lazily executed queries are batched together over shared scans, whatever the batch does they have to give the
+   same rows as executing each of them on its own.
+*/
+@ImpermanentDbmsExtension
+class LazyExecutionIT
+{
+    private static final int NODES = 60;
+
+    @Inject
+    private GraphDatabaseAPI db;
+
+    @BeforeEach
+    void setUp()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            tx.execute( "UNWIND range(0, $last, 2) AS i CREATE (:A {x: i, name: 'n' + i})", Map.of( "last", NODES - 1 ) );
+            tx.execute( "UNWIND range(1, $last, 2) AS i CREATE (:B {x: i, name: 'n' + i})", Map.of( "last", NODES - 1 ) );
+            tx.execute( "MATCH (a:A), (b:B) WHERE b.x = a.x + 1 OR b.x = a.x + 3 CREATE (a)-[:NEXT]->(b)" );
+            tx.commit();
+        }
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesSharingAnAllNodesScan() throws Exception
+    {
+        assertSameRowsAsExecute(
+                "MATCH (n) RETURN n.x AS x",
+                "MATCH (n) WHERE n.x > 10 RETURN n.x AS x, n.name AS name",
+                "MATCH (n) WHERE n.x % 3 = 0 RETURN n.name AS name",
+                "MATCH (n) WHERE n.x < 0 RETURN n.x AS x" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesOnDifferentLabels() throws Exception
+    {
+        assertSameRowsAsExecute(
+                "MATCH (n:A) RETURN n.x AS x",
+                "MATCH (n:B) WHERE n.x > 20 RETURN n.name AS name",
+                "MATCH (n) WHERE n.x < 15 RETURN n.x AS x",
+                "MATCH (n:A) WHERE n.x % 4 = 0 RETURN n.x AS x, n.name AS name" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesSharingAnIndexSeek() throws Exception
+    {
+        // given
+        createIndex( "A", "x" );
+
+        // then
+        assertSameRowsAsExecute(
+                "MATCH (n:A) WHERE n.x = 4 RETURN n.name AS name",
+                "MATCH (n:A) WHERE n.x = 58 RETURN n.name AS name",
+                "MATCH (n:A) WHERE n.x = 4 RETURN n.x AS x",
+                "MATCH (n:A) WHERE n.x = 11 RETURN n.name AS name",
+                "MATCH (n:A) WHERE n.x IN [20, 22, 23] RETURN n.x AS x" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesSharingAnIndexScan() throws Exception
+    {
+        // given
+        createIndex( "A", "x" );
+
+        // then
+        assertSameRowsAsExecute(
+                "MATCH (n:A) WHERE exists(n.x) RETURN n.x AS x",
+                "MATCH (n:A) WHERE exists(n.x) RETURN n.name AS name" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesReadingTheSameProperties() throws Exception
+    {
+        assertSameRowsAsExecute(
+                "MATCH (n) WHERE n.x > 5 AND n.name STARTS WITH 'n1' RETURN n.x AS x, n.name AS name",
+                "MATCH (n) RETURN n.name AS name, n.missing AS missing",
+                "MATCH (n) WHERE n.x <= 5 RETURN n.x + 1 AS y",
+                "MATCH (n) WHERE n.missing IS NULL RETURN properties(n) AS properties" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesThatExpand() throws Exception
+    {
+        assertSameRowsAsExecute(
+                "MATCH (a:A)-[:NEXT]->(b) RETURN a.x AS a, b.x AS b",
+                "MATCH (a:A)-[:NEXT*1..2]-(b) RETURN a.x AS a, b.x AS b",
+                "MATCH (a:A)-[:NEXT]->(b:B)<-[:NEXT]-(c:A) WHERE a <> c RETURN a.x AS a, c.x AS c",
+                "MATCH (a:A), (b:B) WHERE b.x = a.x + 3 MATCH (a)-[:NEXT]->(b) RETURN a.x AS a, b.x AS b" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesWithAHashJoin() throws Exception
+    {
+        assertSameRowsAsExecute(
+                "MATCH (a:A)-[:NEXT]->(b:B)<-[:NEXT]-(c:A) USING JOIN ON b RETURN a.x AS a, c.x AS c",
+                "MATCH (a:A)-[:NEXT]->(b:B)<-[:NEXT]-(c:A) USING JOIN ON b WHERE a.x < c.x RETURN b.x AS b",
+                "MATCH (a:A)-[:NEXT]->(b) RETURN b.x AS b" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesThatAggregate() throws Exception
+    {
+        assertSameRowsAsExecute(
+                "MATCH (n) RETURN count(n) AS count",
+                "MATCH (n) RETURN n:A AS a, count(*) AS count, sum(n.x) AS sum, max(n.name) AS max",
+                "MATCH (n) RETURN DISTINCT n.x % 5 AS r",
+                "MATCH (n:B) WHERE n.x > 100 RETURN count(n) AS count" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteInOrderForQueriesThatSort() throws Exception
+    {
+        assertSameOrderedRowsAsExecute(
+                "MATCH (n) RETURN n.x AS x ORDER BY x DESC",
+                "MATCH (n) RETURN n.x AS x ORDER BY x LIMIT 5",
+                "MATCH (n) WHERE n.x > 30 RETURN n.name AS name ORDER BY n.x SKIP 2 LIMIT 4" );
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForATemplateWithDifferentParameters() throws Exception
+    {
+        // given
+        List<String> queries = new ArrayList<>();
+        List<Map<String,Object>> params = new ArrayList<>();
+        for ( int x = 0; x < 12; x++ )
+        {
+            queries.add( "MATCH (n) WHERE n.x = $x RETURN n.name AS name" );
+            params.add( Map.of( "x", x ) );
+            queries.add( "MATCH (n:A)-[:NEXT]->(b) WHERE n.x > $min RETURN b.x AS b" );
+            params.add( Map.of( "min", 5 * x ) );
+        }
+
+        // when
+        List<List<Map<String,Object>>> expected = execute( queries, params );
+        List<List<Map<String,Object>>> actual = lazyExecute( queries, params );
+
+        // then
+        for ( int i = 0; i < queries.size(); i++ )
+        {
+            assertThat( queries.get( i ) + " " + params.get( i ), actual.get( i ), containsInAnyOrder( expected.get( i ).toArray() ) );
+        }
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesJoiningARunningScan() throws Exception
+    {
+        // given
+        String first = "MATCH (n:A) RETURN n.x AS x";
+        String late = "MATCH (n:A) WHERE n.x % 4 = 0 RETURN n.name AS name";
+        List<List<Map<String,Object>>> expected = execute( List.of( first, late ), List.of( Map.of(), Map.of() ) );
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            // when the second query arrives while the scan of the first is part way through
+            CompletableFuture<List<Map<String,Object>>> firstRows = tx.lazyExecuteAsync( first, Map.of() );
+            int steps = 0;
+            while ( steps < NODES / 4 && tx.lazyPropagate() )
+            {
+                steps++;
+            }
+            CompletableFuture<List<Map<String,Object>>> lateRows = tx.lazyExecuteAsync( late, Map.of() );
+            propagate( tx );
+
+            // then
+            assertThat( firstRows.get( 1, MINUTES ), containsInAnyOrder( expected.get( 0 ).toArray() ) );
+            assertThat( lateRows.get( 1, MINUTES ), containsInAnyOrder( expected.get( 1 ).toArray() ) );
+        }
+    }
+
+    @Test
+    void shouldGiveTheRowsOfExecuteForQueriesSharingAPartitionedScan() throws Exception
+    {
+        // given enough nodes for the scans to be split into ranges
+        try ( Transaction tx = db.beginTx() )
+        {
+            tx.execute( "UNWIND range(1, $count) AS i CREATE (:C {x: i})", Map.of( "count", 3 * LazyPartitionedNodeIterator.RANGE_SIZE() ) );
+            tx.commit();
+        }
+        List<String> queries = List.of(
+                "MATCH (n) RETURN count(n) AS count, sum(n.x) AS sum",
+                "MATCH (n) WHERE n.x % 1000 = 7 RETURN n.x AS x",
+                "MATCH (n:C) WHERE n.x > 12000 RETURN n.x AS x",
+                "MATCH (n:C) RETURN max(n.x) AS max, count(*) AS count" );
+        List<Map<String,Object>> params = Collections.nCopies( queries.size(), Map.of() );
+
+        // when
+        List<List<Map<String,Object>>> expected = execute( queries, params );
+        List<List<Map<String,Object>>> actual = lazyExecute( queries, params, 4 );
+
+        // then
+        for ( int i = 0; i < queries.size(); i++ )
+        {
+            assertThat( queries.get( i ), actual.get( i ), containsInAnyOrder( expected.get( i ).toArray() ) );
+        }
+    }
+
+    // Executes every query on its own, then all of them lazily in one transaction, and compares the rows of each
+    private void assertSameRowsAsExecute( String... queries ) throws Exception
+    {
+        List<List<Map<String,Object>>> expected = new ArrayList<>();
+        List<List<Map<String,Object>>> actual = new ArrayList<>();
+        executeBothWays( queries, expected, actual );
+        for ( int i = 0; i < queries.length; i++ )
+        {
+            assertThat( queries[i], actual.get( i ), containsInAnyOrder( expected.get( i ).toArray() ) );
+        }
+    }
+
+    private void assertSameOrderedRowsAsExecute( String... queries ) throws Exception
+    {
+        List<List<Map<String,Object>>> expected = new ArrayList<>();
+        List<List<Map<String,Object>>> actual = new ArrayList<>();
+        executeBothWays( queries, expected, actual );
+        for ( int i = 0; i < queries.length; i++ )
+        {
+            assertThat( queries[i], actual.get( i ), equalTo( expected.get( i ) ) );
+        }
+    }
+
+    private void executeBothWays( String[] queries, List<List<Map<String,Object>>> expected, List<List<Map<String,Object>>> actual )
+            throws Exception
+    {
+        List<Map<String,Object>> params = Collections.nCopies( queries.length, Map.of() );
+        List<String> templates = List.of( queries );
+        expected.addAll( execute( templates, params ) );
+        actual.addAll( lazyExecute( templates, params ) );
+    }
+
+    private List<List<Map<String,Object>>> execute( List<String> queries, List<Map<String,Object>> params )
+    {
+        List<List<Map<String,Object>>> rows = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( int i = 0; i < queries.size(); i++ )
+            {
+                rows.add( Iterators.asList( tx.execute( queries.get( i ), params.get( i ) ) ) );
+            }
+        }
+        return rows;
+    }
+
+    private List<List<Map<String,Object>>> lazyExecute( List<String> queries, List<Map<String,Object>> params ) throws Exception
+    {
+        return lazyExecute( queries, params, 1 );
+    }
+
+    private List<List<Map<String,Object>>> lazyExecute( List<String> queries, List<Map<String,Object>> params, int scanPartitions )
+            throws Exception
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            tx.setScanPartitions( () -> scanPartitions );
+            List<CompletableFuture<List<Map<String,Object>>>> completions = new ArrayList<>();
+            for ( int i = 0; i < queries.size(); i++ )
+            {
+                completions.add( tx.lazyExecuteAsync( queries.get( i ), params.get( i ) ) );
+            }
+            propagate( tx );
+            List<List<Map<String,Object>>> rows = new ArrayList<>();
+            for ( CompletableFuture<List<Map<String,Object>>> completion : completions )
+            {
+                rows.add( completion.get( 1, MINUTES ) );
+            }
+            return rows;
+        }
+    }
+
+    private void createIndex( String label, String property )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            tx.schema().indexFor( Label.label( label ) ).on( property ).create();
+            tx.commit();
+        }
+        try ( Transaction tx = db.beginTx() )
+        {
+            tx.schema().awaitIndexesOnline( 1, MINUTES );
+        }
+    }
+
+    // Propagates on the calling thread until every lazy operation of the transaction has completed
+    private static void propagate( Transaction tx )
+    {
+        long deadline = System.nanoTime() + MINUTES.toNanos( 1 );
+        while ( tx.lazyPropagate() )
+        {
+            assertTrue( System.nanoTime() < deadline, "Lazy operations did not complete" );
+        }
+    }
+}
@@ -27,17 +27,37 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
 import org.neo4j.cypher.internal.NonFatalCypherError;
 import org.neo4j.cypher.internal.result.ClosingExecutionResult;
 import org.neo4j.cypher.internal.result.StandardInternalExecutionResult;
 import org.neo4j.cypher.internal.result.string.ResultStringBuilder;
+import org.neo4j.cypher.internal.runtime.ExecutionContext;
+import org.neo4j.cypher.internal.runtime.interpreted.LazyBatchWrites;
+import org.neo4j.cypher.internal.runtime.interpreted.LazyExpandCache;
 import org.neo4j.cypher.internal.runtime.interpreted.LazyNodeValueCursorIterator;
+import org.neo4j.cypher.internal.runtime.interpreted.LazyPartitionedNodeIterator;
+import org.neo4j.cypher.internal.runtime.interpreted.LazyPropertyCache;
 import org.neo4j.cypher.internal.runtime.interpreted.PipeExecutionResult;
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.AllNodesScanPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.BatchedPredicateIndex;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.CreatePipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.DeletePipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.ExpandAllPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.ExpandIntoPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.FilterPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.LazyLabel;
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.NodeByLabelScanPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.NodeHashJoinPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.NodeIndexScanPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.NodeIndexSeekPipe;
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.Pipe;
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.PipeWithSource;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.QueryState;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.VarLengthExpandPipe;
 import org.neo4j.exceptions.CypherExecutionException;
 import org.neo4j.exceptions.Neo4jException;
 import org.neo4j.graphdb.ExecutionPlanDescription;
@@ -48,6 +68,9 @@ import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Result;
 import org.neo4j.internal.helpers.collection.PrefetchingResourceIterator;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
 import org.neo4j.kernel.impl.query.QueryExecution;
 import org.neo4j.kernel.impl.query.QueryExecutionKernelException;
 import org.neo4j.kernel.impl.query.QuerySubscriber;
@@ -55,6 +78,8 @@ import org.neo4j.kernel.impl.query.TransactionalContext;
 import org.neo4j.kernel.impl.util.DefaultValueMapper;
 import org.neo4j.util.VisibleForTesting;
 import org.neo4j.values.AnyValue;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.virtual.NodeValue;
 
 /**
  * A {@link QuerySubscriber} that implements the {@link Result} interface.
@@ -510,6 +535,7 @@ public class ResultSubscriber extends PrefetchingResourceIterator<Map<String,Obj
         }
     }
 
+    @Override
     public <VisitationException extends Exception> boolean lazyAccept( ResultVisitor<VisitationException> visitor )
             throws VisitationException
     {
@@ -568,133 +594,443 @@ public class ResultSubscriber extends PrefetchingResourceIterator<Map<String,Obj
     }
 
     // Batching methods
-    public void initializeForBatching() {
+    private PipeExecutionResult pipeExecutionResult(String caller) {
 
         // Confirm proper types
         if(!(this.execution instanceof ClosingExecutionResult)) {
-            System.out.println("Error in initializeForBatching: execution not a ClosingExecutionResult");
+            System.out.println("Error in " + caller + ": execution not a ClosingExecutionResult");
             System.exit(1);
         }
         ClosingExecutionResult cr = (ClosingExecutionResult)this.execution;
 
         if(!(cr.inner() instanceof StandardInternalExecutionResult)) {
-            System.out.println("Error in initializeForBatching: cr inner not a StandardInternalExecutionResult");
+            System.out.println("Error in " + caller + ": cr inner not a StandardInternalExecutionResult");
             System.exit(1);
         }
         StandardInternalExecutionResult sr = (StandardInternalExecutionResult)cr.inner();
 
         if(!(sr.runtimeResult() instanceof PipeExecutionResult)) {
-            System.out.println("Error in initializeForBatching: sr runtimeResult not a PipeExecutionResult");
+            System.out.println("Error in " + caller + ": sr runtimeResult not a PipeExecutionResult");
             System.exit(1);
         }
-        PipeExecutionResult pr = (PipeExecutionResult)sr.runtimeResult();
-        pr.initializeInner();
+        return (PipeExecutionResult)sr.runtimeResult();
     }
 
-    public void batchWith(Result other) {
+    private static Pipe leafPipe(PipeExecutionResult pr) {
+        Pipe root = pr.pipe();
+        while(root instanceof PipeWithSource) {
+            root = ((PipeWithSource) root).getSource();
+        }
+        return root;
+    }
 
-        // Confirm proper types
-        if(!(this.execution instanceof ClosingExecutionResult)) {
-            System.out.println("Error in batchWith: execution not a ClosingExecutionResult");
-            System.exit(1);
+    // True if every pipe steps on its own, so the plan can read a shared scan in lockstep with the rest of a batch
+    private static boolean lockstepPlan(PipeExecutionResult pr) {
+        return !anyPipe(pr.pipe(), pipe -> !pipe.lockstep());
+    }
+
+    // True if a pipe of the plan below root matches, the right side of a hash join is stepped as well
+    private static boolean anyPipe(Pipe root, Predicate<Pipe> matches) {
+        while(root instanceof PipeWithSource) {
+            if(matches.test(root)) {
+                return true;
+            }
+            if(root instanceof NodeHashJoinPipe && anyPipe(((NodeHashJoinPipe) root).right(), matches)) {
+                return true;
+            }
+            root = ((PipeWithSource) root).getSource();
         }
-        ClosingExecutionResult cr = (ClosingExecutionResult)this.execution;
+        return matches.test(root);
+    }
 
-        if(!(cr.inner() instanceof StandardInternalExecutionResult)) {
-            System.out.println("Error in batchWith: cr inner not a StandardInternalExecutionResult");
-            System.exit(1);
+    // True for leaves currently reading every node, either their own all-nodes scan or a widened label scan
+    private static boolean scansAllNodes(PipeExecutionResult pr) {
+        Pipe root = leafPipe(pr);
+        return root instanceof AllNodesScanPipe ||
+               (root instanceof NodeByLabelScanPipe && ((NodeByLabelScanPipe) root).filterByLabel(pr.state()));
+    }
+
+    private static scala.collection.Iterator<NodeValue> leafNodes(PipeExecutionResult pr) {
+        Pipe root = leafPipe(pr);
+        if(root instanceof NodeByLabelScanPipe) {
+            return ((NodeByLabelScanPipe) root).nodes(pr.state());
         }
-        StandardInternalExecutionResult sr = (StandardInternalExecutionResult)cr.inner();
+        else if(root instanceof AllNodesScanPipe) {
+            return ((AllNodesScanPipe) root).nodes(pr.state());
+        }
+        else if(root instanceof NodeIndexSeekPipe) {
+            return ((NodeIndexSeekPipe) root).nodes(pr.state());
+        }
+        else if(root instanceof NodeIndexScanPipe) {
+            return ((NodeIndexScanPipe) root).nodes(pr.state());
+        }
+        return null;
+    }
 
-        if(!(sr.runtimeResult() instanceof PipeExecutionResult)) {
-            System.out.println("Error in batchWith: sr runtimeResult not a PipeExecutionResult");
-            System.exit(1);
+    // Filter directly above the leaf, the only one that sees the shared node of every step
+    private static FilterPipe leafFilter(PipeExecutionResult pr) {
+        Pipe above = null;
+        Pipe root = pr.pipe();
+        while(root instanceof PipeWithSource) {
+            above = root;
+            root = ((PipeWithSource) root).getSource();
         }
-        PipeExecutionResult pr = (PipeExecutionResult)sr.runtimeResult();
+        return above instanceof FilterPipe ? (FilterPipe) above : null;
+    }
 
-        // Already can assume 'other' has proper types because would've been checked in initializeForBatching
-        ResultSubscriber rs = (ResultSubscriber)other;
-        ClosingExecutionResult other_cr = (ClosingExecutionResult)rs.execution;
-        StandardInternalExecutionResult other_sr = (StandardInternalExecutionResult)other_cr.inner();
-        PipeExecutionResult other_pr = (PipeExecutionResult)other_sr.runtimeResult();
+    private static String leafIdent(Pipe root) {
+        if(root instanceof NodeByLabelScanPipe) {
+            return ((NodeByLabelScanPipe) root).ident();
+        }
+        else if(root instanceof AllNodesScanPipe) {
+            return ((AllNodesScanPipe) root).ident();
+        }
+        else if(root instanceof NodeIndexSeekPipe) {
+            return ((NodeIndexSeekPipe) root).ident();
+        }
+        else if(root instanceof NodeIndexScanPipe) {
+            return ((NodeIndexScanPipe) root).ident();
+        }
+        return null;
+    }
+
+    public void initializeForBatching() {
+        pipeExecutionResult("initializeForBatching").initializeInner();
+    }
 
-        Pipe this_root = pr.pipe();
-        while(this_root instanceof PipeWithSource) {
-            this_root = ((PipeWithSource) this_root).getSource();
+    @Override
+    public String lazyScanKey() {
+        PipeExecutionResult pr = pipeExecutionResult("lazyScanKey");
+        Pipe root = leafPipe(pr);
+
+        if(!lockstepPlan(pr)) {
+            return null;
+        }
+        else if(root instanceof AllNodesScanPipe) {
+            return Result.ALL_NODES_SCAN_KEY;
+        }
+        else if(root instanceof NodeByLabelScanPipe) {
+            int labelId = ((NodeByLabelScanPipe) root).label().getId(pr.state().query());
+            // A label that does not exist yet produces no rows, so there is nothing to share
+            return labelId == LazyLabel.UNKNOWN() ? null : "NodeByLabelScan(" + labelId + ")";
+        }
+        else if(root instanceof NodeIndexSeekPipe && ((NodeIndexSeekPipe) root).canBatch()) {
+            return ((NodeIndexSeekPipe) root).batchKey();
         }
+        else if(root instanceof NodeIndexScanPipe && ((NodeIndexScanPipe) root).canBatch()) {
+            return ((NodeIndexScanPipe) root).batchKey();
+        }
+        return null;
+    }
+
+    @Override
+    public long lazyScanCost() {
+        PipeExecutionResult pr = pipeExecutionResult("lazyScanCost");
+        Pipe root = leafPipe(pr);
 
-        Pipe other_root = other_pr.pipe();
-        while(other_root instanceof PipeWithSource) {
-            other_root = ((PipeWithSource) other_root).getSource();
+        if(root instanceof AllNodesScanPipe) {
+            return pr.state().query().nodeCountByCountStore(TokenRead.ANY_LABEL);
         }
+        else if(root instanceof NodeByLabelScanPipe) {
+            int labelId = ((NodeByLabelScanPipe) root).label().getId(pr.state().query());
+            return labelId == LazyLabel.UNKNOWN() ? 0 : pr.state().query().nodeCountByCountStore(labelId);
+        }
+        else if(root instanceof NodeIndexSeekPipe) {
+            // Every key is a single seek
+            return ((NodeIndexSeekPipe) root).seekKeys(pr.state()).length;
+        }
+        else if(root instanceof NodeIndexScanPipe) {
+            return pr.state().query().nodeCountByCountStore(((NodeIndexScanPipe) root).label().nameId().id());
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String lazyFilterKey() {
+        PipeExecutionResult pr = pipeExecutionResult("lazyFilterKey");
+        FilterPipe filter = leafFilter(pr);
+        String ident = leafIdent(leafPipe(pr));
+        if(filter == null || ident == null) {
+            return "";
+        }
+        return BatchedPredicateIndex.comparedProperties(filter, ident);
+    }
 
-        if(other_root instanceof NodeByLabelScanPipe) {
-            if(this_root instanceof NodeByLabelScanPipe) {
-                ((NodeByLabelScanPipe)this_root).setNodes(((NodeByLabelScanPipe)other_root).nodes());
+    @Override
+    public boolean lazyDeterministic() {
+        return pipeExecutionResult("lazyDeterministic").pipe().deterministic();
+    }
+
+    @Override
+    public boolean lazyConflictsWith(Result other) {
+        PipeExecutionResult pr = pipeExecutionResult("lazyConflictsWith");
+        PipeExecutionResult other_pr = ((ResultSubscriber) other).pipeExecutionResult("lazyConflictsWith");
+        return writesConflict(pr.pipe(), other_pr.pipe()) || writesConflict(other_pr.pipe(), pr.pipe());
+    }
+
+    // Deletes may remove what any other member holds in its rows, created relationships may be expanded by others.
+    // Created nodes don't conflict, the shared scan skips them
+    @VisibleForTesting
+    static boolean writesConflict(Pipe writer, Pipe reader) {
+        if(anyPipe(writer, pipe -> pipe instanceof DeletePipe)) {
+            return true;
+        }
+        return anyPipe(writer, pipe -> pipe instanceof CreatePipe && ((CreatePipe) pipe).relationships().length > 0) &&
+               anyPipe(reader, pipe -> pipe instanceof ExpandAllPipe || pipe instanceof ExpandIntoPipe || pipe instanceof VarLengthExpandPipe);
+    }
+
+    @Override
+    public boolean lazyCanShareAllNodesScan() {
+        PipeExecutionResult pr = pipeExecutionResult("lazyCanShareAllNodesScan");
+        Pipe root = leafPipe(pr);
+        return lockstepPlan(pr) && (root instanceof AllNodesScanPipe || root instanceof NodeByLabelScanPipe);
+    }
+
+    @Override
+    public void prepareSharedScan(List<Result> batch, int partitions, Executor workers) {
+        PipeExecutionResult pr = pipeExecutionResult("prepareSharedScan");
+        Pipe root = leafPipe(pr);
+
+        if(root instanceof NodeIndexSeekPipe) {
+            // One sorted pass over the keys of every query in the batch
+            ArrayList<Value> keys = new ArrayList<>();
+            for(Result member : batch) {
+                PipeExecutionResult member_pr = ((ResultSubscriber) member).pipeExecutionResult("prepareSharedScan");
+                keys.addAll(Arrays.asList(((NodeIndexSeekPipe) leafPipe(member_pr)).seekKeys(member_pr.state())));
+            }
+            NodeIndexSeekPipe seek = (NodeIndexSeekPipe) root;
+            seek.setNodes(pr.state(), seek.batchedSeek(pr.state(), keys.toArray(new Value[0])));
+        }
+        else if(root instanceof NodeIndexScanPipe) {
+            NodeIndexScanPipe scan = (NodeIndexScanPipe) root;
+            scan.setNodes(pr.state(), scan.batchedScan(pr.state()));
+        }
+        else if(partitions > 1 && (root instanceof AllNodesScanPipe || root instanceof NodeByLabelScanPipe) && readsCommittedOnly(batch, pr)) {
+            // Read ahead in ranges on several workers, as long as there are enough nodes for every worker to get some
+            long cost = scansAllNodes(pr) ? pr.state().query().nodeCountByCountStore(TokenRead.ANY_LABEL) : lazyScanCost();
+            int ranges = (int) Math.min(partitions, cost / LazyPartitionedNodeIterator.RANGE_SIZE());
+            if(ranges < 2) {
+                return;
             }
-            else if (this_root instanceof AllNodesScanPipe) {
-                // TODO
+            if(scansAllNodes(pr)) {
+                scala.collection.Iterator<NodeValue> nodes = LazyPartitionedNodeIterator.allNodes(pr.state().query(), ranges, workers);
+                if(root instanceof AllNodesScanPipe) {
+                    ((AllNodesScanPipe) root).setNodes(pr.state(), nodes);
+                }
+                else {
+                    ((NodeByLabelScanPipe) root).setNodes(pr.state(), nodes);
+                }
             }
             else {
-                System.out.println("Error in batchWith: unknown type of this_root");
-                System.exit(1);
+                NodeByLabelScanPipe labelScan = (NodeByLabelScanPipe) root;
+                int labelId = labelScan.label().getId(pr.state().query());
+                labelScan.setNodes(pr.state(), LazyPartitionedNodeIterator.nodesByLabel(pr.state().query(), labelId, ranges, workers));
             }
-        } else if (other_root instanceof AllNodesScanPipe) {
-            // TODO
         }
-        else {
-            System.out.println("Error in batchWith: unknown type of other_root");
-            System.exit(1);
+    }
+
+    // The workers of a partitioned scan read on threads of their own, which the state of a transaction with changes
+    // doesn't support
+    private static boolean readsCommittedOnly(List<Result> batch, PipeExecutionResult pr) {
+        for(Result member : batch) {
+            if(member.getQueryExecutionType().queryType() != QueryExecutionType.QueryType.READ_ONLY) {
+                return false;
+            }
         }
+        KernelTransaction transaction = pr.state().query().transactionalContext().transaction();
+        return !(transaction instanceof TxStateHolder) || !((TxStateHolder) transaction).hasTxStateWithChanges();
     }
 
-    public void setUseCached(boolean useCached) {
-        // Confirm proper types
-        if(!(this.execution instanceof ClosingExecutionResult)) {
-            System.out.println("Error in batchWith: execution not a ClosingExecutionResult");
-            System.exit(1);
+    @Override
+    public void prepareSharedFilters(List<Result> batch) {
+        if(batch.size() < 2) {
+            return;
         }
-        ClosingExecutionResult cr = (ClosingExecutionResult)this.execution;
 
-        if(!(cr.inner() instanceof StandardInternalExecutionResult)) {
-            System.out.println("Error in batchWith: cr inner not a StandardInternalExecutionResult");
-            System.exit(1);
+        BatchedPredicateIndex index = new BatchedPredicateIndex();
+        for(Result member : batch) {
+            PipeExecutionResult member_pr = ((ResultSubscriber) member).pipeExecutionResult("prepareSharedFilters");
+            FilterPipe filter = leafFilter(member_pr);
+            String ident = leafIdent(leafPipe(member_pr));
+            if(filter != null && ident != null) {
+                index.add(filter, ident, member_pr.state());
+            }
         }
-        StandardInternalExecutionResult sr = (StandardInternalExecutionResult)cr.inner();
 
-        if(!(sr.runtimeResult() instanceof PipeExecutionResult)) {
-            System.out.println("Error in batchWith: sr runtimeResult not a PipeExecutionResult");
-            System.exit(1);
+        // Only worth it once property reads are actually shared
+        if(index.indexedMembers() > 1) {
+            index.attach();
         }
-        PipeExecutionResult pr = (PipeExecutionResult)sr.runtimeResult();
+    }
 
-        Pipe this_root = pr.pipe();
-        while(this_root instanceof PipeWithSource) {
-            this_root = ((PipeWithSource) this_root).getSource();
+    @Override
+    public void prepareSharedCaches(List<Result> batch) {
+        if(batch.size() < 2) {
+            return;
         }
 
-        try {
+        // A write would leave the cached values stale for the rest of the batch, and the scan has to skip the nodes
+        // the batch creates
+        for(Result member : batch) {
+            if(((ResultSubscriber) member).execution.executionType().queryType() != QueryExecutionType.QueryType.READ_ONLY) {
+                LazyBatchWrites writes = new LazyBatchWrites();
+                for(Result writing : batch) {
+                    ((ResultSubscriber) writing).pipeExecutionResult("prepareSharedCaches").state().setLazyBatchWrites(writes);
+                }
+                return;
+            }
+        }
+
+        LazyExpandCache expandCache = new LazyExpandCache();
+        for(Result member : batch) {
+            ((ResultSubscriber) member).pipeExecutionResult("prepareSharedCaches").state().setLazyExpandCache(expandCache);
+        }
+
+        // Property reads are only shared while the batch steps over the same rows
+        scala.collection.Iterator<NodeValue> shared = leafNodes(pipeExecutionResult("prepareSharedCaches"));
+        if(!(shared instanceof LazyNodeValueCursorIterator)) {
+            return;
+        }
+
+        LazyPropertyCache cache = new LazyPropertyCache();
+        ((LazyNodeValueCursorIterator) shared).setPropertyCache(cache);
+        for(Result member : batch) {
+            ((ResultSubscriber) member).pipeExecutionResult("prepareSharedCaches").state().setLazyPropertyCache(cache);
+        }
+    }
+
+    @Override
+    public void widenToAllNodesScan() {
+        PipeExecutionResult pr = pipeExecutionResult("widenToAllNodesScan");
+        Pipe root = leafPipe(pr);
+
+        if(root instanceof NodeByLabelScanPipe) {
+            NodeByLabelScanPipe labelScan = (NodeByLabelScanPipe) root;
+            labelScan.setNodes(pr.state(), pr.state().query().nodeOps().all());
+            labelScan.setFilterByLabel(pr.state(), true);
+        }
+        else if(!(root instanceof AllNodesScanPipe)) {
+            System.out.println("Error in widenToAllNodesScan: unknown type of root");
+            System.exit(1);
+        }
+    }
+
+    public void batchWith(Result other) {
+        PipeExecutionResult pr = pipeExecutionResult("batchWith");
+
+        // Already can assume 'other' has proper types because would've been checked in initializeForBatching
+        ResultSubscriber rs = (ResultSubscriber)other;
+        ClosingExecutionResult other_cr = (ClosingExecutionResult)rs.execution;
+        StandardInternalExecutionResult other_sr = (StandardInternalExecutionResult)other_cr.inner();
+        PipeExecutionResult other_pr = (PipeExecutionResult)other_sr.runtimeResult();
 
+        Pipe this_root = leafPipe(pr);
+        Pipe other_root = leafPipe(other_pr);
 
-            if (this_root instanceof NodeByLabelScanPipe) {
-                ((LazyNodeValueCursorIterator) ((NodeByLabelScanPipe) this_root).nodes()).setUseCached(useCached);
+        if(scansAllNodes(other_pr)) {
+            // Every leaf can ride an all-nodes scan, label scans just have to drop nodes without their label
+            if(this_root instanceof AllNodesScanPipe) {
+                ((AllNodesScanPipe)this_root).setNodes(pr.state(), leafNodes(other_pr));
             }
-            else if (this_root instanceof AllNodesScanPipe) {
-                // TODO
-                //((LazyNodeValueCursorIterator)((AllNodesScanPipe)this_root).nodes()).setUseCached(useCached);
+            else if (this_root instanceof NodeByLabelScanPipe) {
+                ((NodeByLabelScanPipe)this_root).setNodes(pr.state(), leafNodes(other_pr));
+                ((NodeByLabelScanPipe)this_root).setFilterByLabel(pr.state(), true);
             }
             else {
-                System.out.println("Error in setUseCached: unknown type of this_root");
+                System.out.println("Error in batchWith: unknown type of this_root");
                 System.exit(1);
             }
+        }
+        else if(other_root instanceof NodeByLabelScanPipe) {
+            // A label scan only yields its own label, so it can only be shared with scans of that same label
+            if(this_root instanceof NodeByLabelScanPipe &&
+               ((NodeByLabelScanPipe)this_root).label().equals(((NodeByLabelScanPipe)other_root).label())) {
+                ((NodeByLabelScanPipe)this_root).setNodes(pr.state(), leafNodes(other_pr));
+                ((NodeByLabelScanPipe)this_root).setFilterByLabel(pr.state(), false);
+            }
+            else {
+                System.out.println("Error in batchWith: this_root cannot share a label scan of another label");
+                System.exit(1);
+            }
+        }
+        else if(other_root instanceof NodeIndexSeekPipe || other_root instanceof NodeIndexScanPipe) {
+            // Index leaves share with leaves on the same index, each one picks its own rows from the shared cursor
+            if(!Objects.equals(this.lazyScanKey(), rs.lazyScanKey())) {
+                System.out.println("Error in batchWith: this_root cannot share a scan of another index");
+                System.exit(1);
+            }
+            if(this_root instanceof NodeIndexSeekPipe) {
+                ((NodeIndexSeekPipe)this_root).setNodes(pr.state(), leafNodes(other_pr));
+            }
+            else {
+                ((NodeIndexScanPipe)this_root).setNodes(pr.state(), leafNodes(other_pr));
+            }
+        }
+        else {
+            System.out.println("Error in batchWith: unknown type of other_root");
+            System.exit(1);
+        }
+    }
 
+    @Override
+    public boolean joinSharedScan(Result leader) {
+        PipeExecutionResult pr = pipeExecutionResult("joinSharedScan");
+        PipeExecutionResult leader_pr = ((ResultSubscriber) leader).pipeExecutionResult("joinSharedScan");
+
+        // Only label and all-nodes scans can start over for the rows a late query missed
+        scala.collection.Iterator<NodeValue> shared = leafNodes(leader_pr);
+        if(!lockstepPlan(pr) || !(shared instanceof LazyNodeValueCursorIterator)) {
+            return false;
+        }
+        LazyNodeValueCursorIterator cursor = (LazyNodeValueCursorIterator) shared;
+        if(!cursor.circular() || cursor.exhausted()) {
+            return false;
+        }
 
-        } catch (Exception e) {
-            System.out.println("Exception in setUseCached");
+        // The batch shares its caches on the assumption that nobody in it writes
+        QueryState leader_state = leader_pr.state();
+        boolean sharesCaches = leader_state.lazyPropertyCache() != null || leader_state.lazyExpandCache() != null;
+        if(sharesCaches && execution.executionType().queryType() != QueryExecutionType.QueryType.READ_ONLY) {
+            return false;
         }
 
+        batchWith(leader);
+        pr.state().setLazyPropertyCache(leader_state.lazyPropertyCache());
+        pr.state().setLazyExpandCache(leader_state.lazyExpandCache());
+        initializeForBatching();
+        return true;
+    }
+
+    @Override
+    public List<Map<String,Object>> lazyPartialResult() {
+        scala.collection.Iterator<ExecutionContext> rows = pipeExecutionResult("lazyPartialResult").lazyPartialResult();
+        if(rows == null) {
+            return null;
+        }
 
+        String[] fieldNames = execution.fieldNames();
+        List<Map<String,Object>> partial = new ArrayList<>();
+        while(rows.hasNext()) {
+            ExecutionContext row = rows.next();
+            HashMap<String,Object> record = new HashMap<>();
+            for(String field : fieldNames) {
+                record.put(field, row.getByName(field).map(valueMapper));
+            }
+            partial.add(record);
+        }
+        return partial;
     }
 
+    public void setUseCached(boolean useCached) {
+        scala.collection.Iterator<NodeValue> nodes = leafNodes(pipeExecutionResult("setUseCached"));
 
+        try {
+            // Leaves that can't be shared are batched on their own and never read a cached row
+            if (nodes != null) {
+                ((LazyNodeValueCursorIterator) nodes).setUseCached(useCached);
+            }
+        } catch (Exception e) {
+            System.out.println("Exception in setUseCached");
+        }
+    }
 }
@@ -121,6 +121,12 @@ class ExceptionTranslatingQueryContext(val inner: QueryContext) extends QueryCon
   override def getNodesByLabelPrimitive(id: Int): LongIterator =
     translateException(inner.getNodesByLabelPrimitive(id))
 
+  override def getNodesByIndexSeek(index: IndexReadSession, propertyId: Int, keys: Array[Value]): Iterator[NodeValue] =
+    translateException(inner.getNodesByIndexSeek(index, propertyId, keys))
+
+  override def getNodesByIndexScan(index: IndexReadSession): Iterator[NodeValue] =
+    translateException(inner.getNodesByIndexScan(index))
+
 
   override def nodeAsMap(id: Long, nodeCursor: NodeCursor, propertyCursor: PropertyCursor): MapValue =
     translateException(inner.nodeAsMap(id, nodeCursor, propertyCursor))
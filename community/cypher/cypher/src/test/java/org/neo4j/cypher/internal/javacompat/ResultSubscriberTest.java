@@ -28,6 +28,17 @@ import java.util.List;
 import java.util.Map;
 
 import org.neo4j.cypher.internal.runtime.QueryStatistics;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.AllNodesScanPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.CreatePipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.CreateRelationshipCommand;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.DeletePipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.ExpandAllPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.FilterPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.NodeByLabelScanPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.NodeHashJoinPipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.Pipe;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.PipeWithSource;
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.ProduceResultsPipe;
 import org.neo4j.graphdb.ExecutionPlanDescription;
 import org.neo4j.graphdb.Notification;
 import org.neo4j.graphdb.QueryExecutionType;
@@ -48,6 +59,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
 import static org.neo4j.internal.helpers.collection.MapUtil.map;
 
@@ -226,6 +238,69 @@ class ResultSubscriberTest
         assertTrue( queryExecution.isClosed() );
     }
 
+    @Test
+    void deletesShouldConflictWithAnyReader()
+    {
+        // given
+        Pipe writer = pipeOn( ProduceResultsPipe.class, pipeOn( DeletePipe.class, mock( AllNodesScanPipe.class ) ) );
+        Pipe reader = pipeOn( ProduceResultsPipe.class, pipeOn( FilterPipe.class, mock( NodeByLabelScanPipe.class ) ) );
+
+        // then
+        assertTrue( ResultSubscriber.writesConflict( writer, reader ) );
+        assertFalse( ResultSubscriber.writesConflict( reader, writer ) );
+    }
+
+    @Test
+    void createdRelationshipsShouldOnlyConflictWithReadersThatExpand()
+    {
+        // given
+        Pipe writer = pipeOn( ProduceResultsPipe.class, creating( 1, mock( AllNodesScanPipe.class ) ) );
+        Pipe expanding = pipeOn( ProduceResultsPipe.class, pipeOn( ExpandAllPipe.class, mock( NodeByLabelScanPipe.class ) ) );
+        Pipe filtering = pipeOn( ProduceResultsPipe.class, pipeOn( FilterPipe.class, mock( NodeByLabelScanPipe.class ) ) );
+
+        // then
+        assertTrue( ResultSubscriber.writesConflict( writer, expanding ) );
+        assertFalse( ResultSubscriber.writesConflict( writer, filtering ) );
+    }
+
+    @Test
+    void createdNodesShouldNotConflict()
+    {
+        // given
+        Pipe writer = pipeOn( ProduceResultsPipe.class, creating( 0, mock( AllNodesScanPipe.class ) ) );
+        Pipe expanding = pipeOn( ProduceResultsPipe.class, pipeOn( ExpandAllPipe.class, mock( NodeByLabelScanPipe.class ) ) );
+
+        // then
+        assertFalse( ResultSubscriber.writesConflict( writer, expanding ) );
+    }
+
+    @Test
+    void writesOnTheRightSideOfAHashJoinShouldConflict()
+    {
+        // given
+        NodeHashJoinPipe join = pipeOn( NodeHashJoinPipe.class, mock( NodeByLabelScanPipe.class ) );
+        when( join.right() ).thenReturn( pipeOn( DeletePipe.class, mock( AllNodesScanPipe.class ) ) );
+        Pipe writer = pipeOn( ProduceResultsPipe.class, join );
+        Pipe reader = pipeOn( ProduceResultsPipe.class, mock( NodeByLabelScanPipe.class ) );
+
+        // then
+        assertTrue( ResultSubscriber.writesConflict( writer, reader ) );
+    }
+
+    private static <T extends PipeWithSource> T pipeOn( Class<T> type, Pipe source )
+    {
+        T pipe = mock( type );
+        when( pipe.getSource() ).thenReturn( source );
+        return pipe;
+    }
+
+    private static CreatePipe creating( int relationships, Pipe source )
+    {
+        CreatePipe create = pipeOn( CreatePipe.class, source );
+        when( create.relationships() ).thenReturn( new CreateRelationshipCommand[relationships] );
+        return create;
+    }
+
     private static ResultSubscriber subscriber()
     {
         return new ResultSubscriber( mock( TransactionalContext.class, RETURNS_DEEP_STUBS ) );
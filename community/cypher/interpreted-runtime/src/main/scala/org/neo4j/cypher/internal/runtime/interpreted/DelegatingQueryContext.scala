@@ -151,6 +151,11 @@ abstract class DelegatingQueryContext(val inner: QueryContext) extends QueryCont
 
   override def getNodesByLabelPrimitive(id: Int): LongIterator = manyDbHits(inner.getNodesByLabelPrimitive(id))
 
+  override def getNodesByIndexSeek(index: IndexReadSession, propertyId: Int, keys: Array[Value]): Iterator[NodeValue] =
+    manyDbHits(inner.getNodesByIndexSeek(index, propertyId, keys))
+
+  override def getNodesByIndexScan(index: IndexReadSession): Iterator[NodeValue] = manyDbHits(inner.getNodesByIndexScan(index))
+
   override def nodeAsMap(id: Long, nodeCursor: NodeCursor, propertyCursor: PropertyCursor): MapValue = {
     val map = inner.nodeAsMap(id, nodeCursor, propertyCursor)
     //one hit finding the node, then finding the properies
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet
+
+// TAG: Lazy Implementation
+/**
+  * Writes of the members of a lazy batch that could change what the shared scan reads. The batch reads its scan
+  * as of the start of the batch, so nodes created by a member while it runs are skipped by every member rather
+  * than seen by some, and a member creating nodes on the label it scans can't feed on its own writes.
+  */
+class LazyBatchWrites {
+
+  private val createdNodes = new LongHashSet()
+
+  def nodeCreated(nodeId: Long): Unit = createdNodes.add(nodeId)
+
+  def createdByBatch(nodeId: Long): Boolean = createdNodes.contains(nodeId)
+}
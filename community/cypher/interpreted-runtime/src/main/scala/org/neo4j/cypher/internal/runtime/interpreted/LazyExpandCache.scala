@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted
+
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.QueryState
+import org.neo4j.cypher.internal.v4_0.expressions.SemanticDirection
+import org.neo4j.values.virtual.RelationshipValue
+
+import scala.collection.AbstractIterator
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+// TAG: Lazy Implementation
+/**
+  * Relationship traversals shared by the queries of a lazy batch. The first query to expand a node reads its
+  * relationships from the store, and queries expanding the same node the same way while that traversal is
+  * still being read get the relationships read so far from here. A traversal is dropped once all of its
+  * readers are done with it, either at its end or when their execution lets go of its scans early, e.g. after
+  * a LIMIT or when it is cancelled.
+  */
+class LazyExpandCache {
+
+  private type Key = (Long, SemanticDirection, Option[Seq[Int]])
+
+  private val traversals = mutable.HashMap[Key, SharedTraversal]()
+
+  def relationships(node: Long, dir: SemanticDirection, types: Array[Int], state: QueryState): Iterator[RelationshipValue] = {
+    val key = (node, dir, Option(types).map(_.toSeq))
+    traversals.getOrElseUpdate(key, new SharedTraversal(key, state.query.getRelationshipsForIds(node, dir, types))).reader(state)
+  }
+
+  private class SharedTraversal(key: Key, source: Iterator[RelationshipValue]) {
+
+    private val read = ArrayBuffer[RelationshipValue]()
+    private var readers = 0
+
+    def reader(state: QueryState): Iterator[RelationshipValue] = {
+      readers += 1
+      val reader = new AbstractIterator[RelationshipValue] with AutoCloseable {
+        private var position = 0
+        private var released = false
+
+        override def hasNext: Boolean = {
+          val more = !released && (position < read.size || (source.hasNext && { read += source.next(); true }))
+          if (!more) {
+            close()
+          }
+          more
+        }
+
+        override def next(): RelationshipValue = {
+          if (!hasNext) Iterator.empty.next()
+          position += 1
+          read(position - 1)
+        }
+
+        override def close(): Unit = {
+          if (!released) {
+            released = true
+            state.closeTraversal(this)
+            release()
+          }
+        }
+      }
+      state.openTraversal(reader)
+      reader
+    }
+
+    private def release(): Unit = {
+      readers -= 1
+      if (readers == 0) {
+        traversals.remove(key)
+      }
+    }
+  }
+}
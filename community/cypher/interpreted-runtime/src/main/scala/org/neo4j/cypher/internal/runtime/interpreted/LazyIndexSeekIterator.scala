@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted
+
+import org.neo4j.values.storable.Value
+import org.neo4j.values.virtual.NodeValue
+
+// TAG: Lazy Implementation
+/**
+  * Seeks a batch of exact keys one after the other, remembering which key each node was found by so a
+  * node of a batched seek can be routed to the queries that asked for that key.
+  */
+abstract class LazyIndexSeekIterator(keys: Array[Value]) extends LazyNodeValueCursorIterator {
+
+  // Left uninitialized on purpose, fetchNext is already called while CursorIterator is being constructed
+  private var _keyPosition: Int = _
+  private var _nextKey: Value = _
+  private var _nextValue: Value = _
+
+  // Key of the node in _cached, and the value the index holds for it, null if the index has no values
+  var _cachedKey: Value = _
+  var _cachedValue: Value = _
+
+  protected def seek(key: Value): Unit
+
+  protected def fetchHit(): NodeValue
+
+  // Value stored in the index for the last hit, which may differ from the key it was found by, e.g. 5 for 5.0
+  protected def hitValue(): Value
+
+  override protected def fetchNext(): NodeValue = {
+    var hit = if (_nextKey == null) null else fetchHit()
+    while (hit == null && _keyPosition < keys.length) {
+      _nextKey = keys(_keyPosition)
+      _keyPosition += 1
+      seek(_nextKey)
+      hit = fetchHit()
+    }
+    _nextValue = if (hit == null) null else hitValue()
+    hit
+  }
+
+  override def next(): NodeValue = {
+    if (!_useCached) {
+      // _next was found by the key sought last, and is about to become _cached
+      _cachedKey = _nextKey
+      _cachedValue = _nextValue
+    }
+    super.next()
+  }
+}
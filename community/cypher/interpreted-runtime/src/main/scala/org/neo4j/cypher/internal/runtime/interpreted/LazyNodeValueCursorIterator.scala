@@ -20,6 +20,45 @@ abstract class LazyNodeValueCursorIterator extends CursorIterator[NodeValue] {
     this._useCached = useCached
   }
 
+  // Number of rows the leader has moved to, so the others can tell whether _cached is new to them
+  var _position : Long = _
+
+  // No rows left after the one in _cached
+  def exhausted : Boolean = _next == null
+
+  // Property reads of the row in _cached, shared by the batch
+  var _propertyCache : LazyPropertyCache = _
+  def setPropertyCache(propertyCache : LazyPropertyCache) : Unit = {
+    this._propertyCache = propertyCache
+  }
+
+  // Circular scans: a query can join the scan part way and have it wrap around to the rows it missed.
+  // Lap and offset within the lap of the rows in _next and _cached, and the number of joined queries still to
+  // be wrapped around for
+  var _nextLap : Int = _
+  var _nextOffset : Long = _
+  var _cachedLap : Int = _
+  var _cachedOffset : Long = _
+  var _lateJoiners : Int = _
+  def joinLate() : Unit = { _lateJoiners += 1 }
+  def leaveLate() : Unit = { _lateJoiners -= 1 }
+
+  // Executions reading this cursor, it is closed as soon as the last of them is done with it
+  var _consumers : Int = _
+  def retain() : Unit = { _consumers += 1 }
+  def release() : Unit = {
+    _consumers -= 1
+    if (_consumers <= 0 && _next != null) {
+      _next = null
+      close()
+    }
+  }
+
+  // Starts the scan over for another lap, false if this scan can't
+  protected def rewind(): Boolean = false
+
+  def circular : Boolean = false
+
   protected def fetchNext(): NodeValue
 
   protected def close(): Unit
@@ -53,7 +92,19 @@ abstract class LazyNodeValueCursorIterator extends CursorIterator[NodeValue] {
 
     val current = _next
     _cached = current
+    _cachedLap = _nextLap
+    _cachedOffset = _nextOffset
+    _position += 1
+    if (_propertyCache != null) {
+      _propertyCache.clear()
+    }
     _next = fetchNext()
+    _nextOffset += 1
+    if (_next == null && _lateJoiners > 0 && rewind()) {
+      _nextLap += 1
+      _nextOffset = 0
+      _next = fetchNext()
+    }
    // _currentcount += 1
     if (!hasNext) {
     //  _currentcount = 0
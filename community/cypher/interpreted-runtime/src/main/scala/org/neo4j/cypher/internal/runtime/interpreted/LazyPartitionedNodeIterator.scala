@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted
+
+import java.util
+import java.util.concurrent.{CountDownLatch, Executor, Semaphore}
+
+import org.neo4j.cypher.internal.runtime.QueryContext
+import org.neo4j.internal.kernel.api.{Cursor, NodeCursor, NodeLabelIndexCursor, Scan}
+import org.neo4j.kernel.impl.util.ValueUtils.fromNodeEntity
+import org.neo4j.values.virtual.NodeValue
+
+import scala.collection.mutable
+
+// TAG: Lazy Implementation
+/**
+  * Label or all-nodes scan of a lazy batch, split into ranges of nodes that are read ahead in parallel. Each worker
+  * reserves the next range of the scan on a cursor of its own and reads the node references in it, the batch then
+  * takes the nodes range by range in the order the ranges were reserved. Every query of the batch still sees one
+  * order of nodes, only the reads of the store are spread over the workers. The workers run on the executor of the
+  * transaction, which has a thread for each of them.
+  */
+class LazyPartitionedNodeIterator[C <: Cursor](query: QueryContext,
+                                               newScan: () => Scan[C],
+                                               cursors: Array[C],
+                                               reference: C => Long,
+                                               workers: Executor) extends LazyNodeValueCursorIterator {
+
+  import LazyPartitionedNodeIterator._
+
+  // Set on the first fetch, CursorIterator fetches before the fields of this class would be initialized
+  private var pass: Pass = _
+  private var range: Array[Long] = _
+  private var inRange: Int = _
+
+  override protected def fetchNext(): NodeValue = {
+    if (pass == null) {
+      pass = start()
+    }
+    while (range == null || inRange >= range.length) {
+      if (range != null) {
+        pass.taken()
+      }
+      range = pass.nextRange()
+      inRange = 0
+      if (range == null) {
+        return null
+      }
+    }
+    inRange += 1
+    fromNodeEntity(query.entityAccessor.newNodeEntity(range(inRange - 1)))
+  }
+
+  override protected def rewind(): Boolean = {
+    pass.stop()
+    pass = start()
+    range = null
+    true
+  }
+
+  override def circular: Boolean = true
+
+  override protected def close(): Unit = {
+    if (pass != null) {
+      pass.stop()
+    }
+    cursors.foreach(_.close())
+  }
+
+  private def start(): Pass = {
+    val next = new Pass(newScan())
+    cursors.foreach { cursor =>
+      workers.execute(new Runnable {
+        override def run(): Unit = next.work(cursor)
+      })
+    }
+    next
+  }
+
+  // One pass over the whole scan, a circular scan makes a new one for every lap
+  private class Pass(scan: Scan[C]) {
+    private val reserving = new Object
+    private val ranges = new util.HashMap[Integer, Array[Long]]()
+    private val ahead = new Semaphore(cursors.length * RANGES_AHEAD)
+    private val running = new CountDownLatch(cursors.length)
+    private var reserved = 0
+    private var taking = 0
+    private var ended = false
+    @volatile private var stopped = false
+    @volatile private var failure: Throwable = _
+
+    def work(cursor: C): Unit = {
+      try {
+        var more = true
+        while (more) {
+          ahead.acquire()
+          if (stopped) {
+            more = false
+          }
+          else {
+            var number = 0
+            // Ranges are numbered in the order they were reserved, so they are taken in scan order
+            reserving.synchronized {
+              number = reserved
+              reserved += 1
+              more = scan.reserveBatch(cursor, RANGE_SIZE)
+            }
+            publish(number, if (more) read(cursor) else END)
+          }
+        }
+      } catch {
+        case t: Throwable =>
+          failure = t
+          synchronized { notifyAll() }
+      } finally {
+        running.countDown()
+      }
+    }
+
+    private def read(cursor: C): Array[Long] = {
+      val references = mutable.ArrayBuilder.make[Long]()
+      while (cursor.next()) {
+        references += reference(cursor)
+      }
+      references.result()
+    }
+
+    private def publish(number: Int, references: Array[Long]): Unit = synchronized {
+      ranges.put(number, references)
+      notifyAll()
+    }
+
+    // The next range in scan order, null once the scan has ended
+    def nextRange(): Array[Long] = synchronized {
+      while (!ended && !ranges.containsKey(taking) && failure == null) {
+        wait()
+      }
+      if (failure != null) {
+        throw failure
+      }
+      if (ended) {
+        null
+      }
+      else {
+        val references = ranges.remove(taking)
+        taking += 1
+        ended = references eq END
+        if (ended) null else references
+      }
+    }
+
+    // The batch is done with a range, so another one can be read ahead
+    def taken(): Unit = ahead.release()
+
+    // Waits for the workers, so they are done with the cursors before the next pass starts or they are closed
+    def stop(): Unit = {
+      stopped = true
+      ahead.release(cursors.length)
+      running.await()
+    }
+  }
+}
+
+object LazyPartitionedNodeIterator {
+
+  // Nodes reserved per range, and ranges each worker may read ahead of the batch
+  val RANGE_SIZE = 4096
+  private val RANGES_AHEAD = 4
+
+  private val END = new Array[Long](0)
+
+  // Cursors are allocated here rather than by the workers, the cursor pools of a transaction aren't thread safe
+  def allNodes(query: QueryContext, partitions: Int, workers: Executor): LazyNodeValueCursorIterator = {
+    val context = query.transactionalContext
+    val cursors = Array.fill[NodeCursor](partitions)(context.cursors.allocateNodeCursor())
+    new LazyPartitionedNodeIterator[NodeCursor](query, () => context.dataRead.allNodesScan(), cursors, _.nodeReference(), workers)
+  }
+
+  def nodesByLabel(query: QueryContext, label: Int, partitions: Int, workers: Executor): LazyNodeValueCursorIterator = {
+    val context = query.transactionalContext
+    val cursors = Array.fill[NodeLabelIndexCursor](partitions)(context.cursors.allocateNodeLabelIndexCursor())
+    new LazyPartitionedNodeIterator[NodeLabelIndexCursor](query, () => context.dataRead.nodeLabelScan(label), cursors, _.nodeReference(), workers)
+  }
+}
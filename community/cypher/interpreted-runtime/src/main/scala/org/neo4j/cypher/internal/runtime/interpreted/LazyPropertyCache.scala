@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted
+
+import org.eclipse.collections.impl.map.mutable.primitive.{IntObjectHashMap, LongObjectHashMap}
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.QueryState
+import org.neo4j.values.storable.Value
+
+// TAG: Lazy Implementation
+/**
+  * Node properties read for the current row of a shared scan. Every query of a lazy batch sees the same row,
+  * so the first one to read a property of a node reads it from the store and the rest reuse it. Cleared by
+  * the shared cursor whenever it moves on to the next row.
+  */
+class LazyPropertyCache {
+
+  private val nodes = new LongObjectHashMap[IntObjectHashMap[Value]]()
+
+  def nodeProperty(nodeId: Long, propertyKey: Int, state: QueryState): Value = {
+    var properties = nodes.get(nodeId)
+    if (properties == null) {
+      properties = new IntObjectHashMap[Value]()
+      nodes.put(nodeId, properties)
+    }
+    var value = properties.get(propertyKey)
+    if (value == null) {
+      value = LazyPropertyCache.read(nodeId, propertyKey, state)
+      properties.put(propertyKey, value)
+    }
+    value
+  }
+
+  def clear(): Unit = nodes.clear()
+}
+
+object LazyPropertyCache {
+
+  // Reads through the cache of the batch the state belongs to, if any
+  def nodeProperty(nodeId: Long, propertyKey: Int, state: QueryState): Value = {
+    val cache = state.lazyPropertyCache
+    if (cache == null) read(nodeId, propertyKey, state) else cache.nodeProperty(nodeId, propertyKey, state)
+  }
+
+  private def read(nodeId: Long, propertyKey: Int, state: QueryState): Value =
+    state.query.nodeOps.getProperty(nodeId, propertyKey, state.cursors.nodeCursor, state.cursors.propertyCursor, throwOnDeleted = true)
+}
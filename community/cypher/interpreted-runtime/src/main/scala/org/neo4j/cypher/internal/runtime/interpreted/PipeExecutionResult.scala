@@ -23,7 +23,8 @@ import java.lang
 import java.util.Optional
 
 import org.neo4j.cypher.internal.runtime._
-import org.neo4j.cypher.internal.runtime.interpreted.pipes.{Pipe, QueryState}
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{DONE, NO_ROW, ROW}
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.{Pipe, QueryState, RowSteps}
 import org.neo4j.cypher.result.RuntimeResult.ConsumptionState
 import org.neo4j.cypher.result.{QueryProfile, RuntimeResult}
 import org.neo4j.kernel.impl.query.QuerySubscriber
@@ -43,16 +44,24 @@ class PipeExecutionResult(p: Pipe,
   private var inner: Iterator[_] = _
   private val numberOfFields = fieldNames.length
 
+  // TAG: Lazy Implementation
+  private var steps: RowSteps = _
+  private var stepsDone = false
+
   override def queryStatistics(): QueryStatistics = state.getStatistics
 
   override def totalAllocatedMemory: Optional[lang.Long] = state.memoryTracker.totalAllocatedMemory
 
   override def close(): Unit = {
+    state.releaseLeafNodes()
     state.close()
   }
 
   override def consumptionState: RuntimeResult.ConsumptionState =
-    if (inner == null) ConsumptionState.NOT_STARTED
+    if (steps != null) {
+      if (stepsDone) ConsumptionState.EXHAUSTED else ConsumptionState.HAS_MORE
+    }
+    else if (inner == null) ConsumptionState.NOT_STARTED
     else if (inner.hasNext) ConsumptionState.HAS_MORE
     else ConsumptionState.EXHAUSTED
 
@@ -76,9 +85,6 @@ class PipeExecutionResult(p: Pipe,
 
   private def serveResults(): Boolean = {
     while (inner.hasNext && demand > 0 && !cancelled) {
-      //if(inner.next() == null) {
-      //  return false
-      //}
       inner.next()
       demand -= 1L
     }
@@ -97,16 +103,40 @@ class PipeExecutionResult(p: Pipe,
       Long.MaxValue
     } else value
 
+  // TAG: Lazy Implementation
   def initializeInner(): Unit = {
-    if (inner == null) {
-      inner =  pipe.createResults(state)
+    if (steps == null) {
+      steps = pipe.createSteps(state)
     }
   }
 
-  // TAG: Lazy Implementation
+  // Every requested record is one step, whether or not the step produces a row. The results are complete as soon
+  // as no further step could produce a row, e.g. right after the last row of a LIMIT
   override def lazyRequest(numberOfRecords: Long): Boolean = {
     initializeInner()
     demand = checkForOverflow(demand + numberOfRecords)
-    serveResults()
+    while (!stepsDone && demand > 0 && !cancelled) {
+      steps.step() match {
+        case ROW | NO_ROW =>
+          demand -= 1L
+          if (steps.finished) stepsCompleted()
+        case DONE => stepsCompleted()
+      }
+    }
+    // A cancelled result, e.g. by a visitor that wants no more rows, is as complete as it gets
+    if (cancelled && !stepsDone) {
+      stepsCompleted()
+    }
+    stepsDone
   }
+
+  // Lets go of the scans this execution reads right away, so a shared scan stops once nothing reads it anymore
+  private def stepsCompleted(): Unit = {
+    stepsDone = true
+    state.releaseLeafNodes()
+    subscriber.onResultCompleted(state.getStatistics)
+  }
+
+  // What the plan would return if its input ended now, null if it hasn't started or nothing in it waits for the whole input
+  def lazyPartialResult(): Iterator[ExecutionContext] = if (steps == null) null else steps.partialResult
 }
@@ -312,7 +312,47 @@ sealed class TransactionBoundQueryContext(val transactionalContext: Transactiona
         else null
       }
 
-      override protected def close(): Unit = {}
+      override protected def rewind(): Boolean = {
+        reads().nodeLabelScan(id, cursor)
+        true
+      }
+
+      override def circular: Boolean = true
+
+      override protected def close(): Unit = cursor.close()
+    }
+  }
+
+  // TAG: Lazy Implementation
+  override def getNodesByIndexSeek(index: IndexReadSession, propertyId: Int, keys: Array[Value]): Iterator[NodeValue] = {
+    val cursor = allocateAndTraceNodeValueIndexCursor()
+    // Seeking the keys in order walks the index once, from the lowest key to the highest
+    val sortedKeys = keys.distinct.sorted(Ordering.comparatorToOrdering(Values.COMPARATOR))
+    new LazyIndexSeekIterator(sortedKeys) {
+      override protected def seek(key: Value): Unit =
+        reads().nodeIndexSeek(index, cursor, KernelIndexOrder.NONE, true, IndexQuery.exact(propertyId, key))
+
+      override protected def fetchHit(): NodeValue = {
+        if (cursor.next()) fromNodeEntity(entityAccessor.newNodeEntity(cursor.nodeReference()))
+        else null
+      }
+
+      override protected def hitValue(): Value = if (cursor.hasValue) cursor.propertyValue(0) else null
+
+      override protected def close(): Unit = cursor.close()
+    }
+  }
+
+  override def getNodesByIndexScan(index: IndexReadSession): Iterator[NodeValue] = {
+    val cursor = allocateAndTraceNodeValueIndexCursor()
+    reads().nodeIndexScan(index, cursor, KernelIndexOrder.NONE, false)
+    new LazyNodeValueCursorIterator {
+      override protected def fetchNext(): NodeValue = {
+        if (cursor.next()) fromNodeEntity(entityAccessor.newNodeEntity(cursor.nodeReference()))
+        else null
+      }
+
+      override protected def close(): Unit = cursor.close()
     }
   }
 
@@ -504,6 +544,13 @@ sealed class TransactionBoundQueryContext(val transactionalContext: Transactiona
           else null
         }
 
+        override protected def rewind(): Boolean = {
+          reads().allNodesScan(nodeCursor)
+          true
+        }
+
+        override def circular: Boolean = true
+
         override protected def close(): Unit = nodeCursor.close()
       }
     }
@@ -21,6 +21,7 @@ package org.neo4j.cypher.internal.runtime.interpreted.commands.expressions
 
 import org.neo4j.cypher.internal.planner.spi.TokenContext
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, IsNoValue}
+import org.neo4j.cypher.internal.runtime.interpreted.LazyPropertyCache
 import org.neo4j.cypher.internal.runtime.interpreted.commands.AstNode
 import org.neo4j.cypher.internal.runtime.interpreted.commands.values.KeyToken
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.QueryState
@@ -82,7 +83,7 @@ abstract class AbstractCachedNodeProperty extends AbstractCachedProperty {
 
   override def property(state: QueryState,
                         id: Long,
-                        propId: Int): Value = state.query.nodeProperty(id, propId, state.cursors.nodeCursor, state.cursors.propertyCursor, throwOnDeleted = true)
+                        propId: Int): Value = LazyPropertyCache.nodeProperty(id, propId, state) // TAG: Lazy Implementation
 }
 
 abstract class AbstractCachedRelationshipProperty extends AbstractCachedProperty {
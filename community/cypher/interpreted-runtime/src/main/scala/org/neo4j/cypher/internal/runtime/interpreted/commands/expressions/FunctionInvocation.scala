@@ -25,6 +25,7 @@ import org.neo4j.cypher.internal.runtime.interpreted.commands.AstNode
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.QueryState
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, QueryContext}
 import org.neo4j.values._
+import org.neo4j.values.storable.TextValue
 
 
 case class FunctionInvocation(signature: UserFunctionSignature, input: Array[Expression])
@@ -49,4 +50,29 @@ case class FunctionInvocation(signature: UserFunctionSignature, input: Array[Exp
 
   override def rewrite(f: Expression => Expression): Expression =
     f(FunctionInvocation(signature, input.map(a => a.rewrite(f))))
+
+  // TAG: Lazy Implementation
+  // Whether every call with the same arguments gives the same value within a transaction
+  def deterministic: Boolean = FunctionInvocation.deterministic(signature, input)
+}
+
+// TAG: Lazy Implementation
+object FunctionInvocation {
+  private val TEMPORALS = Set("date", "datetime", "localdatetime", "time", "localtime")
+
+  // User defined functions known not to read a clock or have side effects, by lower case name. The transaction
+  // clock doesn't move within a transaction
+  private val DETERMINISTIC_FUNCTIONS: Set[String] =
+    Set("duration", "duration.between", "duration.inmonths", "duration.indays", "duration.inseconds") ++
+      TEMPORALS.map(_ + ".transaction")
+
+  // Any other function, e.g. randomUUID(), datetime.realtime() or date.statement(), counts as nondeterministic,
+  // except for a temporal built from a string, which is parsed rather than read from a clock
+  def deterministic(signature: UserFunctionSignature, input: Array[Expression]): Boolean = {
+    val name = signature.name.toString.toLowerCase
+    DETERMINISTIC_FUNCTIONS.contains(name) || (TEMPORALS.contains(name) && input.headOption.exists {
+      case literal: Literal => literal.anyVal.isInstanceOf[TextValue]
+      case _ => false
+    })
+  }
 }
@@ -20,7 +20,7 @@
 package org.neo4j.cypher.internal.runtime.interpreted.commands.expressions
 
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, IsNoValue}
-import org.neo4j.cypher.internal.runtime.interpreted.IsMap
+import org.neo4j.cypher.internal.runtime.interpreted.{IsMap, LazyPropertyCache}
 import org.neo4j.cypher.internal.runtime.interpreted.commands.values.KeyToken
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.QueryState
 import org.neo4j.exceptions.{CypherTypeException, InvalidArgumentException}
@@ -38,7 +38,8 @@ case class Property(mapExpr: Expression, propertyKey: KeyToken)
     case n: VirtualNodeValue =>
       propertyKey.getOptId(state.query) match {
         case None => Values.NO_VALUE
-        case Some(propId) => state.query.nodeOps.getProperty(n.id(), propId, state.cursors.nodeCursor, state.cursors.propertyCursor, throwOnDeleted = true)
+        // TAG: Lazy Implementation
+        case Some(propId) => LazyPropertyCache.nodeProperty(n.id(), propId, state)
       }
     case r: VirtualRelationshipValue =>
       propertyKey.getOptId(state.query) match {
@@ -21,20 +21,29 @@ package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
+import org.neo4j.values.virtual.NodeValue
 
 case class AllNodesScanPipe(ident: String)(val id: Id = Id.INVALID_ID) extends Pipe {
 
+  // TAG: Lazy Implementation
+  def nodes(state: QueryState) : Iterator[NodeValue] = state.leafNodes(this)
+  def setNodes(state: QueryState, iterator: Iterator[NodeValue]) : Unit = state.setLeafNodes(this, iterator)
+
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
     val baseContext = state.newExecutionContext(executionContextFactory)
-    state.query.nodeOps.all.map(n => {
-      // TAG: Lazy Implementation
-      if(n == null) {
-        null
-      }
-      else {
-        executionContextFactory.copyWith(baseContext, ident, n)
-      }
-    })
+    state.query.nodeOps.all.map(n => executionContextFactory.copyWith(baseContext, ident, n))
+  }
+
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(state: QueryState): RowSteps = {
+    if(nodes(state) == null) {
+      setNodes(state, state.query.nodeOps.all)
+    }
+    val baseContext = state.newExecutionContext(executionContextFactory)
+    new NodeSteps(nodes(state), state) {
+      override protected def toRow(node: NodeValue): ExecutionContext = executionContextFactory.copyWith(baseContext, ident, node)
+    }
   }
 
+  override def lockstep: Boolean = true
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted.pipes
+
+import java.util
+
+import org.neo4j.cypher.internal.runtime.ExecutionContext
+import org.neo4j.cypher.internal.runtime.interpreted.LazyPropertyCache
+import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.{Expression, Literal, ParameterFromSlot, Property, Variable}
+import org.neo4j.cypher.internal.runtime.interpreted.commands.predicates._
+import org.neo4j.values.storable._
+import org.neo4j.values.virtual.VirtualNodeValue
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+// TAG: Lazy Implementation
+/**
+  * Evaluates the filters sitting right above the shared scan of a lazy batch. Every member filters the same node
+  * at each step, so comparisons of a property of that node against a constant are taken out of the member
+  * predicates and grouped by property. Each property is then read once per node, equalities are answered by one
+  * hash lookup and ranges by a binary search over their sorted bounds, and the members whose comparisons all
+  * hold are marked. Anything else stays with its member and is evaluated as before.
+  */
+class BatchedPredicateIndex {
+
+  import BatchedPredicateIndex._
+
+  // One slot per member, found by the state of its execution
+  private val slots = new util.IdentityHashMap[QueryState, Integer]()
+  private val filters = ArrayBuffer[FilterPipe]()
+  private val states = ArrayBuffer[QueryState]()
+  private val idents = ArrayBuffer[String]()
+  private val residuals = ArrayBuffer[Expression]()
+  private val needed = ArrayBuffer[Int]()
+  private val byProperty = mutable.LinkedHashMap[Int, PropertyBounds]()
+
+  private var propertyIds: Array[Int] = _
+  private var properties: Array[PropertyBounds] = _
+
+  // Comparisons that held for the node in lastNode, per slot
+  private var hits: Array[Int] = _
+  private var lastNode: VirtualNodeValue = _
+
+  def add(filter: FilterPipe, ident: String, state: QueryState): Unit = {
+    val slot = idents.size
+    slots.put(state, slot)
+    filters += filter
+    states += state
+    idents += ident
+
+    var indexed = 0
+    val rest = ArrayBuffer[Predicate]()
+    filter.predicate match {
+      case predicate: Predicate =>
+        for (atom <- predicate.atoms) {
+          if (indexAtom(atom, slot, ident, state)) indexed += 1 else rest += atom
+        }
+        residuals += (if (rest.isEmpty) null else Ands(rest: _*))
+      case other =>
+        residuals += other
+    }
+    needed += indexed
+  }
+
+  def indexedMembers: Int = needed.count(_ > 0)
+
+  def attach(): Unit = {
+    propertyIds = byProperty.keys.toArray
+    properties = byProperty.values.toArray
+    properties.foreach(_.sort())
+    hits = new Array[Int](idents.size)
+    for (i <- filters.indices) {
+      filters(i).setBatchIndex(states(i), this)
+    }
+  }
+
+  // -1 if the execution of this state isn't part of the batch
+  def slotOf(state: QueryState): Int = {
+    val slot = slots.get(state)
+    if (slot == null) -1 else slot
+  }
+
+  def test(slot: Int, ctx: ExecutionContext, state: QueryState): Boolean = ctx.getByName(idents(slot)) match {
+    case node: VirtualNodeValue =>
+      if (!(node eq lastNode)) {
+        evaluate(node, state)
+      }
+      hits(slot) == needed(slot) && (residuals(slot) == null || (residuals(slot)(ctx, state) eq Values.TRUE))
+    case _ => false
+  }
+
+  private def evaluate(node: VirtualNodeValue, state: QueryState): Unit = {
+    util.Arrays.fill(hits, 0)
+    var i = 0
+    while (i < propertyIds.length) {
+      val value = LazyPropertyCache.nodeProperty(node.id(), propertyIds(i), state)
+      properties(i).mark(value, hits)
+      i += 1
+    }
+    lastNode = node
+  }
+
+  private def indexAtom(atom: Predicate, slot: Int, ident: String, state: QueryState): Boolean = atom match {
+    case Equals(a, b) => indexComparison(EQ, a, b, slot, ident, state) || indexComparison(EQ, b, a, slot, ident, state)
+    case LessThan(a, b) => indexComparison(LT, a, b, slot, ident, state) || indexComparison(GT, b, a, slot, ident, state)
+    case LessThanOrEqual(a, b) => indexComparison(LTE, a, b, slot, ident, state) || indexComparison(GTE, b, a, slot, ident, state)
+    case GreaterThan(a, b) => indexComparison(GT, a, b, slot, ident, state) || indexComparison(LT, b, a, slot, ident, state)
+    case GreaterThanOrEqual(a, b) => indexComparison(GTE, a, b, slot, ident, state) || indexComparison(LTE, b, a, slot, ident, state)
+    case _ => false
+  }
+
+  // Indexes "property op constant" when property is a property of the scanned node
+  private def indexComparison(op: Int, property: Expression, constant: Expression, slot: Int, ident: String, state: QueryState): Boolean =
+    (property, constant) match {
+      case (Property(Variable(name), key), _: Literal | _: ParameterFromSlot) if name == ident =>
+        key.getOptId(state.query) match {
+          case Some(propertyId) =>
+            constant(ExecutionContext.empty, state) match {
+              case value: Value if op == EQ && (category(value) != NONE || value.isInstanceOf[BooleanValue]) =>
+                byProperty.getOrElseUpdate(propertyId, new PropertyBounds).addEquality(value, slot)
+                true
+              case value: Value if op != EQ && category(value) != NONE =>
+                byProperty.getOrElseUpdate(propertyId, new PropertyBounds).addRange(op, category(value), value, slot)
+                true
+              case _ => false
+            }
+          case None => false
+        }
+      case _ => false
+    }
+}
+
+object BatchedPredicateIndex {
+
+  private val LT = 0
+  private val LTE = 1
+  private val GT = 2
+  private val GTE = 3
+  private val EQ = 4
+
+  // Ranges only hold between values of the same category, anything else compares to null
+  private val NONE = -1
+  private val NUMBER = 0
+  private val TEXT = 1
+
+  // Sorted names of the properties of the scanned node the filter compares, what it would share with a batch
+  def comparedProperties(filter: FilterPipe, ident: String): String = filter.predicate match {
+    case predicate: Predicate =>
+      predicate.atoms.flatMap {
+        case Equals(a, b) => Seq(a, b)
+        case LessThan(a, b) => Seq(a, b)
+        case LessThanOrEqual(a, b) => Seq(a, b)
+        case GreaterThan(a, b) => Seq(a, b)
+        case GreaterThanOrEqual(a, b) => Seq(a, b)
+        case _ => Seq.empty
+      }.collect {
+        case Property(Variable(name), key) if name == ident => key.name
+      }.distinct.sorted.mkString(",")
+    case _ => ""
+  }
+
+  private def category(value: Value): Int = value match {
+    case f: FloatingPointValue if f.isNaN => NONE
+    case _: NumberValue => NUMBER
+    case _: TextValue => TEXT
+    case _ => NONE
+  }
+
+  private class PropertyBounds {
+    private val equalities = mutable.HashMap[Value, ArrayBuffer[Int]]()
+    private val ranges = Array.fill(4 * 2)(new RangeBounds)
+
+    def addEquality(value: Value, slot: Int): Unit = equalities.getOrElseUpdate(value, ArrayBuffer[Int]()) += slot
+
+    def addRange(op: Int, category: Int, value: Value, slot: Int): Unit = ranges(op * 2 + category).add(value, slot)
+
+    def sort(): Unit = ranges.foreach(_.sort())
+
+    def mark(value: Value, hits: Array[Int]): Unit = {
+      equalities.get(value) match {
+        case Some(slots) => slots.foreach(slot => hits(slot) += 1)
+        case None =>
+      }
+      val c = category(value)
+      if (c != NONE) {
+        var op = LT
+        while (op <= GTE) {
+          ranges(op * 2 + c).mark(op, value, hits)
+          op += 1
+        }
+      }
+    }
+  }
+
+  private class RangeBounds {
+    private val pending = ArrayBuffer[(Value, Int)]()
+    private var bounds: Array[Value] = Array.empty
+    private var slots: Array[Int] = Array.empty
+
+    def add(value: Value, slot: Int): Unit = pending += ((value, slot))
+
+    def sort(): Unit = {
+      val sorted = pending.sortWith((a, b) => Values.COMPARATOR.compare(a._1, b._1) < 0)
+      bounds = sorted.map(_._1).toArray
+      slots = sorted.map(_._2).toArray
+    }
+
+    def mark(op: Int, value: Value, hits: Array[Int]): Unit = op match {
+      case LT => markFrom(firstAbove(value), hits)
+      case LTE => markFrom(firstAtLeast(value), hits)
+      case GT => markUntil(firstAtLeast(value), hits)
+      case GTE => markUntil(firstAbove(value), hits)
+    }
+
+    private def markFrom(from: Int, hits: Array[Int]): Unit = {
+      var i = from
+      while (i < slots.length) {
+        hits(slots(i)) += 1
+        i += 1
+      }
+    }
+
+    private def markUntil(until: Int, hits: Array[Int]): Unit = {
+      var i = 0
+      while (i < until) {
+        hits(slots(i)) += 1
+        i += 1
+      }
+    }
+
+    private def firstAtLeast(value: Value): Int = search(value, strict = false)
+
+    private def firstAbove(value: Value): Int = search(value, strict = true)
+
+    private def search(value: Value, strict: Boolean): Int = {
+      var low = 0
+      var high = bounds.length
+      while (low < high) {
+        val mid = (low + high) >>> 1
+        val cmp = Values.COMPARATOR.compare(bounds(mid), value)
+        if (cmp < 0 || (strict && cmp == 0)) low = mid + 1 else high = mid
+      }
+      low
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.interpreted._
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.Expression
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{ROW, Step}
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, IsNoValue, LenientCreateRelationship, Operations, QueryContext, _}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.exceptions.{CypherTypeException, InternalException, InvalidSemanticsException}
@@ -136,21 +137,38 @@ case class CreatePipe(src: Pipe, nodes: Array[CreateNodeCommand], relationships:
 
   override def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] =
     input.map(row => {
-      // TAG: Lazy Implementation
-      if(row != null) {
-        nodes.foreach { nodeCommand =>
-          val (key, node) = createNode(row, state, nodeCommand)
-          row.set(key, node)
-        }
-
-        relationships.foreach { relCommand =>
-          val (key, node) = createRelationship(row, state, relCommand)
-          row.set(key, node)
-        }
-      }
+      create(row, state)
       row
     })
 
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new RowSteps {
+    override def step(): Step = input.step() match {
+      case ROW =>
+        val row = input.row
+        create(row, state)
+        emit(row)
+      case other => other
+    }
+  }
+
+  override def lockstep: Boolean = true
+
+  private def create(row: ExecutionContext, state: QueryState): Unit = {
+    nodes.foreach { nodeCommand =>
+      val (key, node) = createNode(row, state, nodeCommand)
+      if (state.lazyBatchWrites != null) {
+        state.lazyBatchWrites.nodeCreated(node.id())
+      }
+      row.set(key, node)
+    }
+
+    relationships.foreach { relCommand =>
+      val (key, node) = createRelationship(row, state, relCommand)
+      row.set(key, node)
+    }
+  }
+
   override protected def handleNoValue(key: String) {
     // do nothing
   }
@@ -21,6 +21,7 @@ package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.interpreted.GraphElementPropertyFunctions
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.Expression
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{ROW, Step}
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, IsNoValue}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.exceptions.CypherTypeException
@@ -36,25 +37,39 @@ case class DeletePipe(src: Pipe, expression: Expression, forced: Boolean)
   override protected def internalCreateResults(input: Iterator[ExecutionContext],
                                                state: QueryState): Iterator[ExecutionContext] = {
     input.map { row =>
-      // Lazy Implementation
-      if (row != null) {
-        expression(row, state) match {
-          case null => // do nothing
-          case IsNoValue() => // do nothing
-          case r: RelationshipValue =>
-            deleteRelationship(r, state)
-          case n: NodeValue =>
-            deleteNode(n, state)
-          case p: PathValue =>
-            deletePath(p, state)
-          case other =>
-            throw new CypherTypeException(s"Expected a Node, Relationship or Path, but got a ${other.getClass.getSimpleName}")
-        }
-      }
+      delete(row, state)
       row
     }
   }
 
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new RowSteps {
+    override def step(): Step = input.step() match {
+      case ROW =>
+        val row = input.row
+        delete(row, state)
+        emit(row)
+      case other => other
+    }
+  }
+
+  override def lockstep: Boolean = true
+
+  private def delete(row: ExecutionContext, state: QueryState): Unit = {
+    expression(row, state) match {
+      case null => // do nothing
+      case IsNoValue() => // do nothing
+      case r: RelationshipValue =>
+        deleteRelationship(r, state)
+      case n: NodeValue =>
+        deleteNode(n, state)
+      case p: PathValue =>
+        deletePath(p, state)
+      case other =>
+        throw new CypherTypeException(s"Expected a Node, Relationship or Path, but got a ${other.getClass.getSimpleName}")
+    }
+  }
+
   private def deleteNode(n: NodeValue, state: QueryState) = if (!state.query.nodeOps.isDeletedInThisTx(n.id())) {
     if (forced) state.query.detachDeleteNode(n.id())
     else state.query.nodeOps.delete(n.id())
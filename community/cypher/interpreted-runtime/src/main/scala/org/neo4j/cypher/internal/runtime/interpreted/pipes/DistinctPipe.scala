@@ -22,6 +22,7 @@ package org.neo4j.cypher.internal.runtime.interpreted.pipes
 import org.neo4j.cypher.internal.runtime.ExecutionContext
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.Expression
 import org.neo4j.cypher.internal.runtime.interpreted.pipes.DistinctPipe.GroupingCol
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{NO_ROW, ROW, Step}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.values.AnyValue
 import org.neo4j.values.virtual.VirtualValues
@@ -44,12 +45,7 @@ case class DistinctPipe(source: Pipe, groupingColumns: Array[GroupingCol])
     val seen = mutable.Set[AnyValue]()
 
     input.filter { ctx =>
-      var i = 0
-      while (i < groupingColumns.length) {
-        ctx.set(groupingColumns(i).key, groupingColumns(i).expression(ctx, state))
-        i += 1
-      }
-      val groupingValue = VirtualValues.list(keyNames.map(ctx.getByName): _*)
+      val groupingValue = computeGroupingValue(ctx, state)
       val added = seen.add(groupingValue)
       if (added) {
         state.memoryTracker.allocated(groupingValue)
@@ -58,6 +54,48 @@ case class DistinctPipe(source: Pipe, groupingColumns: Array[GroupingCol])
     }
   }
 
+  // TAG: Lazy Implementation
+  // Checks one row per step, a partial result from below is made distinct on its own
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val seen = mutable.Set[AnyValue]()
+
+    new RowSteps {
+      override def step(): Step = input.step() match {
+        case ROW =>
+          val ctx = input.row
+          val groupingValue = computeGroupingValue(ctx, state)
+          if (seen.add(groupingValue)) {
+            state.memoryTracker.allocated(groupingValue)
+            emit(ctx)
+          }
+          else NO_ROW
+        case other => other
+      }
+
+      override def finished: Boolean = input.finished
+
+      override def partialResult: Iterator[ExecutionContext] = {
+        val rows = input.partialResult
+        if (rows == null) null
+        else {
+          val partialSeen = mutable.Set[AnyValue]()
+          rows.map(_.createClone()).filter(ctx => partialSeen.add(computeGroupingValue(ctx, state)))
+        }
+      }
+    }
+  }
+
+  override def lockstep: Boolean = true
+
+  private def computeGroupingValue(ctx: ExecutionContext, state: QueryState): AnyValue = {
+    var i = 0
+    while (i < groupingColumns.length) {
+      ctx.set(groupingColumns(i).key, groupingColumns(i).expression(ctx, state))
+      i += 1
+    }
+    VirtualValues.list(keyNames.map(ctx.getByName): _*)
+  }
+
   override def equals(obj: Any): Boolean = {
     obj match {
       case DistinctPipe(otherSource, otherGroupingColumns) =>
@@ -39,4 +39,19 @@ case class EagerAggregationPipe(source: Pipe,
     }
     table.result()
   }
+
+  // TAG: Lazy Implementation
+  // Aggregates one input row per step, the running aggregates are the partial result
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val table = tableFactory.table(state, executionContextFactory)
+    table.clear()
+
+    new ConsumingSteps(input) {
+      override protected def consume(row: ExecutionContext): Unit = table.processRow(row)
+
+      override protected def result(): IndexedSeq[ExecutionContext] = table.result().toIndexedSeq
+    }
+  }
+
+  override def lockstep: Boolean = true
 }
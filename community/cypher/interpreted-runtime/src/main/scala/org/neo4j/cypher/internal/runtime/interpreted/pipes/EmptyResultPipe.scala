@@ -20,20 +20,27 @@
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{NO_ROW, ROW, Step}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 
 case class EmptyResultPipe(source: Pipe)(val id: Id = Id.INVALID_ID) extends PipeWithSource(source) {
 
   protected def internalCreateResults(input:Iterator[ExecutionContext], state: QueryState) = {
-    // TAG: Lazy Implementation
-    input
-
-    /*
     while(input.hasNext) {
       input.next()
     }
 
     Iterator.empty
-    */
   }
+
+  // TAG: Lazy Implementation
+  // Consumes one input row per step instead of draining the input up front
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new RowSteps {
+    override def step(): Step = input.step() match {
+      case ROW => NO_ROW
+      case other => other
+    }
+  }
+
+  override def lockstep: Boolean = true
 }
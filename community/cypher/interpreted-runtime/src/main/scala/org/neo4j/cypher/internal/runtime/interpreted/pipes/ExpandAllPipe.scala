@@ -35,25 +35,42 @@ case class ExpandAllPipe(source: Pipe,
 
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
     input.flatMap {
-      row => {
-        // TAG: Lazy Implementation
-        if(row == null) {
-          None
-        }
-        else {
-          row.getByName(fromName) match {
-            case n: NodeValue =>
-              val relationships: Iterator[RelationshipValue] = state.query.getRelationshipsForIds(n.id(), dir, types.types(state.query))
-              relationships.map { r =>
-                val other = r.otherNode(n)
-                executionContextFactory.copyWith(row, relName, r, toName, other)
-              }
-            case IsNoValue() => None
-
-            case value => throw new ParameterWrongTypeException(s"Expected to find a node at '$fromName' but found $value instead")
-          }
+      row => expand(row, state)
+    }
+  }
+
+  // TAG: Lazy Implementation
+  // Reads one relationship per step, sharing the traversal with the rest of the batch when it expands the same node
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new ExpandSteps[RelationshipValue](input) {
+    override protected def expand(row: ExecutionContext): Iterator[RelationshipValue] = row.getByName(fromName) match {
+      case n: NodeValue =>
+        val cache = state.lazyExpandCache
+        if (cache == null) state.query.getRelationshipsForIds(n.id(), dir, types.types(state.query))
+        else cache.relationships(n.id(), dir, types.types(state.query), state)
+      case IsNoValue() => Iterator.empty
+
+      case value => throw new ParameterWrongTypeException(s"Expected to find a node at '$fromName' but found $value instead")
+    }
+
+    override protected def toRow(row: ExecutionContext, r: RelationshipValue): ExecutionContext = {
+      val n = row.getByName(fromName).asInstanceOf[NodeValue]
+      executionContextFactory.copyWith(row, relName, r, toName, r.otherNode(n))
+    }
+  }
+
+  override def lockstep: Boolean = true
+
+  private def expand(row: ExecutionContext, state: QueryState): Iterator[ExecutionContext] = {
+    row.getByName(fromName) match {
+      case n: NodeValue =>
+        val relationships: Iterator[RelationshipValue] = state.query.getRelationshipsForIds(n.id(), dir, types.types(state.query))
+        relationships.map { r =>
+          val other = r.otherNode(n)
+          executionContextFactory.copyWith(row, relName, r, toName, other)
         }
-      }
+      case IsNoValue() => Iterator.empty
+
+      case value => throw new ParameterWrongTypeException(s"Expected to find a node at '$fromName' but found $value instead")
     }
   }
 }
@@ -23,7 +23,7 @@ import org.neo4j.cypher.internal.runtime.{ExecutionContext, IsNoValue}
 import org.neo4j.cypher.internal.v4_0.expressions.SemanticDirection
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.exceptions.{InternalException, ParameterWrongTypeException}
-import org.neo4j.values.virtual.NodeValue
+import org.neo4j.values.virtual.{NodeValue, RelationshipValue}
 
 /**
  * Expand when both end-points are known, find all relationships of the given
@@ -51,24 +51,42 @@ case class ExpandIntoPipe(source: Pipe,
 
     input.flatMap {
       row =>
-        val fromNode = getRowNode(row, fromName)
-        fromNode match {
-          case fromNode: NodeValue =>
-            val toNode = getRowNode(row, toName)
-            toNode match {
-              case IsNoValue() => Iterator.empty
-              case n: NodeValue =>
+        relationshipsBetween(row, state, relCache).map(r => executionContextFactory.copyWith(row, relName, r))
+    }
+  }
+
+  // TAG: Lazy Implementation
+  // Reads one connecting relationship per step
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val relCache = new RelationshipsCache(CACHE_SIZE)
+
+    new ExpandSteps[RelationshipValue](input) {
+      override protected def expand(row: ExecutionContext): Iterator[RelationshipValue] = relationshipsBetween(row, state, relCache)
 
-                val relationships = relCache.get(fromNode, n, dir)
-                  .getOrElse(findRelationships(state, fromNode, n, relCache, dir, lazyTypes.types(state.query)))
+      override protected def toRow(row: ExecutionContext, r: RelationshipValue): ExecutionContext = executionContextFactory.copyWith(row, relName, r)
+    }
+  }
 
-                if (relationships.isEmpty) Iterator.empty
-                else relationships.map(r => executionContextFactory.copyWith(row, relName, r))
-              case value => throw new ParameterWrongTypeException(s"Expected to find a node at '$fromName' but found $value instead")
-            }
+  override def lockstep: Boolean = true
 
+  private def relationshipsBetween(row: ExecutionContext, state: QueryState, relCache: RelationshipsCache): Iterator[RelationshipValue] = {
+    val fromNode = getRowNode(row, fromName)
+    fromNode match {
+      case fromNode: NodeValue =>
+        val toNode = getRowNode(row, toName)
+        toNode match {
           case IsNoValue() => Iterator.empty
+          case n: NodeValue =>
+
+            val relationships = relCache.get(fromNode, n, dir)
+              .getOrElse(findRelationships(state, fromNode, n, relCache, dir, lazyTypes.types(state.query)))
+
+            if (relationships.isEmpty) Iterator.empty
+            else relationships
+          case value => throw new ParameterWrongTypeException(s"Expected to find a node at '$fromName' but found $value instead")
         }
+
+      case IsNoValue() => Iterator.empty
     }
   }
 }
@@ -21,6 +21,7 @@ package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.Expression
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{NO_ROW, ROW, Step}
 import org.neo4j.values.storable.Values
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 
@@ -29,24 +30,36 @@ case class FilterPipe(source: Pipe, predicate: Expression)
 
   predicate.registerOwningPipe(this)
 
-  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
-    // TAG: Lazy Implementation
-    /*
-    input.filter(ctx => {
-      (ctx == null) || (predicate(ctx, state) eq Values.TRUE)
-    })
-    */
-
-    // Build filter with a map
-    // Essentially, we don't want the filter pipe to keep pulling until it finds an element that passes
-    // We want it to only check one at a time, so all filters in a batch are still at the same element
-    // Therefore, if you pull one which doesn't match, then just pass along null
-    input.map(ctx => {
-      if(predicate(ctx, state) eq Values.TRUE) {
-        ctx
-      } else {
-        null
+  // TAG: Lazy Implementation
+  // Set when this filter sits on the shared scan of a lazy batch, see BatchedPredicateIndex
+  def batchIndex(state: QueryState) : BatchedPredicateIndex = state.filterIndex(this)
+  def setBatchIndex(state: QueryState, index: BatchedPredicateIndex) : Unit = state.setFilterIndex(this, index)
+
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] =
+    input.filter(ctx => predicate(ctx, state) eq Values.TRUE)
+
+  // TAG: Lazy Implementation
+  // Checks one row per step, so all filters in a batch stay at the same row of the shared scan
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val index = batchIndex(state)
+    val slot = if(index == null) -1 else index.slotOf(state)
+    new RowSteps {
+      override def step(): Step = input.step() match {
+        case ROW =>
+          val ctx = input.row
+          val passes = if(slot >= 0) index.test(slot, ctx, state) else predicate(ctx, state) eq Values.TRUE
+          if(passes) emit(ctx) else NO_ROW
+        case other => other
+      }
+
+      override def finished: Boolean = input.finished
+
+      override def partialResult: Iterator[ExecutionContext] = {
+        val rows = input.partialResult
+        if(rows == null) null else rows.filter(ctx => predicate(ctx, state) eq Values.TRUE)
       }
-    })
+    }
   }
+
+  override def lockstep: Boolean = true
 }
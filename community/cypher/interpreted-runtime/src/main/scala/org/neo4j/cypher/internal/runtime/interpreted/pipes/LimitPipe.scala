@@ -21,6 +21,7 @@ package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.{Expression, NumericHelper}
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{DONE, ROW, Step}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.exceptions.InvalidArgumentException
 import org.neo4j.values.storable.FloatingPointValue
@@ -35,16 +36,7 @@ case class LimitPipe(source: Pipe, exp: Expression)
   exp.registerOwningPipe(this)
 
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
-    val limitNumber = NumericHelper.asNumber(exp(state.newExecutionContext(executionContextFactory), state))
-    if (limitNumber.isInstanceOf[FloatingPointValue]) {
-      val limit = limitNumber.doubleValue()
-      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
-    }
-    val limit = limitNumber.longValue()
-
-    if (limit < 0) {
-      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
-    }
+    val limit = evaluateLimit(state)
 
     if (limit == 0 || input.isEmpty) return empty
 
@@ -54,15 +46,53 @@ case class LimitPipe(source: Pipe, exp: Expression)
       def hasNext: Boolean = remaining > 0 && input.hasNext
 
       def next(): ExecutionContext =
-        // TAG: Lazy Implementation
         if (remaining > 0L) {
-          val n = input.next()
-          if(n != null) {
-            remaining -= 1L
-          }
-          n
+          remaining -= 1L
+          input.next()
         }
         else empty.next()
     }
   }
+
+  // TAG: Lazy Implementation
+  // Done as soon as the limit is reached, without pulling the input any further
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val limit = evaluateLimit(state)
+
+    new RowSteps {
+      private var remaining = limit
+
+      override def step(): Step =
+        if (remaining <= 0L) DONE
+        else input.step() match {
+          case ROW =>
+            remaining -= 1L
+            emit(input.row)
+          case other => other
+        }
+
+      override def finished: Boolean = remaining <= 0L || input.finished
+
+      override def partialResult: Iterator[ExecutionContext] = {
+        val rows = input.partialResult
+        if (rows == null) null else rows.take(math.min(limit, Int.MaxValue).toInt)
+      }
+    }
+  }
+
+  override def lockstep: Boolean = true
+
+  private def evaluateLimit(state: QueryState): Long = {
+    val limitNumber = NumericHelper.asNumber(exp(state.newExecutionContext(executionContextFactory), state))
+    if (limitNumber.isInstanceOf[FloatingPointValue]) {
+      val limit = limitNumber.doubleValue()
+      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
+    }
+    val limit = limitNumber.longValue()
+
+    if (limit < 0) {
+      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
+    }
+    limit
+  }
 }
@@ -28,26 +28,45 @@ case class NodeByLabelScanPipe(ident: String, label: LazyLabel)
                               (val id: Id = Id.INVALID_ID) extends Pipe  {
 
   // TAG: Lazy Implementation
-  var nodes : Iterator[NodeValue] = _
-  def setNodes(iterator: Iterator[NodeValue]) : Unit = { nodes = iterator }
+  def nodes(state: QueryState) : Iterator[NodeValue] = state.leafNodes(this)
+  def setNodes(state: QueryState, iterator: Iterator[NodeValue]) : Unit = state.setLeafNodes(this, iterator)
+
+  // Set when `nodes` is a shared all-nodes scan, so rows without the label have to be skipped here
+  def filterByLabel(state: QueryState) : Boolean = state.labelFiltered(this)
+  def setFilterByLabel(state: QueryState, filter: Boolean) : Unit = state.setLabelFiltered(this, filter)
 
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
 
     val id = label.getId(state.query)
     if (id != UNKNOWN) {
-      if(nodes == null) {
-        setNodes(state.query.getNodesByLabel(id))
+      val nodes = state.query.getNodesByLabel(id)
+      val baseContext = state.newExecutionContext(executionContextFactory)
+      nodes.map(n => executionContextFactory.copyWith(baseContext, ident, n))
+    } else Iterator.empty
+  }
+
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(state: QueryState): RowSteps = {
+
+    val id = label.getId(state.query)
+    if (id != UNKNOWN) {
+      if(nodes(state) == null) {
+        setNodes(state, state.query.getNodesByLabel(id))
       }
       val baseContext = state.newExecutionContext(executionContextFactory)
-      nodes.map(n => {
-        // TAG: Lazy Implementation
-        if (n == null) {
-          null
-        }
-        else {
-          executionContextFactory.copyWith(baseContext, ident, n)
+      val filterByLabel = this.filterByLabel(state)
+      new NodeSteps(nodes(state), state) {
+        override protected def toRow(node: NodeValue): ExecutionContext = {
+          if (filterByLabel && !state.query.isLabelSetOnNode(id, node.id(), state.cursors.nodeCursor)) {
+            null
+          }
+          else {
+            executionContextFactory.copyWith(baseContext, ident, node)
+          }
         }
-      })
-    } else Iterator.empty
+      }
+    } else RowSteps.fromIterator(Iterator.empty)
   }
+
+  override def lockstep: Boolean = true
 }
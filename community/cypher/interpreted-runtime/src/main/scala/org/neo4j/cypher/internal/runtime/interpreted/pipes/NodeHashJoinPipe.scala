@@ -20,6 +20,7 @@
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, IsNoValue}
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{DONE, NO_ROW, ROW, Step}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.exceptions.CypherTypeException
 import org.neo4j.values.virtual.VirtualNodeValue
@@ -59,6 +60,48 @@ case class NodeHashJoinPipe(nodeVariables: Set[String], left: Pipe, right: Pipe)
     result.flatten
   }
 
+  // TAG: Lazy Implementation
+  // Adds one left row to the probe table per step, then probes with one right row or emits one joined row per step
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new RowSteps {
+    private val table = new mutable.HashMap[IndexedSeq[Long], mutable.MutableList[ExecutionContext]]
+    private var building = true
+    private var rhs: RowSteps = _
+    private var rhsRow: ExecutionContext = _
+    private var lhsRows: Iterator[ExecutionContext] = Iterator.empty
+
+    override def step(): Step = {
+      if (building) {
+        input.step() match {
+          case ROW =>
+            val context = input.row
+            state.memoryTracker.allocated(context)
+            computeKey(context).foreach(joinKey => table.getOrElseUpdate(joinKey, mutable.MutableList.empty) += context)
+          case DONE =>
+            building = false
+            if (table.nonEmpty) rhs = right.createSteps(state)
+          case NO_ROW =>
+        }
+        NO_ROW
+      }
+      else if (lhsRows.hasNext) {
+        val output = lhsRows.next().createClone()
+        output.mergeWith(rhsRow, state.query)
+        emit(output)
+      }
+      else if (rhs == null) DONE
+      else rhs.step() match {
+        case ROW =>
+          rhsRow = rhs.row
+          lhsRows = computeKey(rhsRow).flatMap(table.get).map(_.iterator).getOrElse(Iterator.empty)
+          NO_ROW
+        case NO_ROW => NO_ROW
+        case DONE => DONE
+      }
+    }
+  }
+
+  override def lockstep: Boolean = true
+
   private def buildProbeTable(input: Iterator[ExecutionContext]): mutable.HashMap[IndexedSeq[Long], mutable.MutableList[ExecutionContext]] = {
     val table = new mutable.HashMap[IndexedSeq[Long], mutable.MutableList[ExecutionContext]]
 
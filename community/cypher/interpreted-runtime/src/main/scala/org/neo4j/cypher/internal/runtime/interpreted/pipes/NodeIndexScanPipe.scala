@@ -20,9 +20,10 @@
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
-import org.neo4j.cypher.internal.logical.plans.{IndexOrder, IndexedProperty}
+import org.neo4j.cypher.internal.logical.plans.{IndexOrder, IndexOrderNone, IndexedProperty}
 import org.neo4j.cypher.internal.v4_0.expressions.{CachedProperty, LabelToken}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
+import org.neo4j.values.virtual.NodeValue
 
 import scala.collection.Iterator
 
@@ -39,9 +40,37 @@ case class NodeIndexScanPipe(ident: String,
     indexPropertyIndices.map(offset => properties(offset).asCachedProperty(ident))
   private val needsValues: Boolean = indexPropertyIndices.nonEmpty
 
+  // TAG: Lazy Implementation
+  def nodes(state: QueryState) : Iterator[NodeValue] = state.leafNodes(this)
+  def setNodes(state: QueryState, iterator: Iterator[NodeValue]) : Unit = state.setLeafNodes(this, iterator)
+
+  // A shared scan reads no property values, so only scans that don't need them can be batched
+  def canBatch: Boolean = !needsValues && indexOrder == IndexOrderNone
+
+  def batchKey: String = s"NodeIndexScan(${label.nameId.id},${properties.map(_.propertyKeyToken.nameId.id).mkString(",")})"
+
+  def batchedScan(state: QueryState): Iterator[NodeValue] =
+    state.query.getNodesByIndexScan(state.queryIndexes(queryIndexId))
+
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
     val baseContext = state.newExecutionContext(executionContextFactory)
     val cursor = state.query.indexScan(state.queryIndexes(queryIndexId), needsValues, indexOrder)
     new IndexIterator(state.query, baseContext, cursor)
   }
+
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(state: QueryState): RowSteps = {
+    val nodes = this.nodes(state)
+    if (nodes == null) {
+      super.internalCreateSteps(state)
+    }
+    else {
+      val baseContext = state.newExecutionContext(executionContextFactory)
+      new NodeSteps(nodes, state) {
+        override protected def toRow(node: NodeValue): ExecutionContext = executionContextFactory.copyWith(baseContext, ident, node)
+      }
+    }
+  }
+
+  override def lockstep: Boolean = true
 }
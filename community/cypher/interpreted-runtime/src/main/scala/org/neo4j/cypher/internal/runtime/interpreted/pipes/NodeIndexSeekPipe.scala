@@ -20,10 +20,13 @@
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
+import org.neo4j.cypher.internal.runtime.interpreted.LazyIndexSeekIterator
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.Expression
 import org.neo4j.cypher.internal.logical.plans._
 import org.neo4j.cypher.internal.v4_0.expressions.{CachedProperty, LabelToken}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
+import org.neo4j.values.storable.{FloatingPointValue, Value, Values}
+import org.neo4j.values.virtual.NodeValue
 
 case class NodeIndexSeekPipe(ident: String,
                              label: LabelToken,
@@ -43,15 +46,67 @@ case class NodeIndexSeekPipe(ident: String,
 
   valueExpr.expressions.foreach(_.registerOwningPipe(this))
 
+  // TAG: Lazy Implementation
+  def nodes(state: QueryState) : Iterator[NodeValue] = state.leafNodes(this)
+  def setNodes(state: QueryState, iterator: Iterator[NodeValue]) : Unit = state.setLeafNodes(this, iterator)
+
+  // Only plain exact seeks on a single property can have their keys merged with other queries
+  def canBatch: Boolean = indexMode == IndexSeek && propertyIds.length == 1 && (valueExpr match {
+    case _: SingleQueryExpression[_] | _: ManyQueryExpression[_] => true
+    case _ => false
+  })
+
+  def seekKeys(state: QueryState): Array[Value] = {
+    val baseContext = state.newExecutionContext(executionContextFactory)
+    computeExactQueries(state, baseContext).flatten.map(_.value()).filterNot(key =>
+      (key eq Values.NO_VALUE) || (key.isInstanceOf[FloatingPointValue] && key.asInstanceOf[FloatingPointValue].isNaN)
+    ).toArray
+  }
+
+  def batchKey: String = s"NodeIndexSeek(${label.nameId.id},${propertyIds.mkString(",")})"
+
+  def batchedSeek(state: QueryState, keys: Array[Value]): Iterator[NodeValue] =
+    state.query.getNodesByIndexSeek(state.queryIndexes(queryIndexId), propertyIds.head, keys)
+
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
     val index = state.queryIndexes(queryIndexId)
     val baseContext = state.newExecutionContext(executionContextFactory)
-
     indexSeek(state, index, needsValues, indexOrder, baseContext).flatMap(
       cursor => new IndexIterator(state.query, baseContext, cursor)
     )
   }
 
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(state: QueryState): RowSteps = {
+    val nodes = this.nodes(state)
+    if (nodes == null) {
+      super.internalCreateSteps(state)
+    }
+    else {
+      // The shared seek yields the hits of every key in the batch, only pass on the ones this query asked for
+      val baseContext = state.newExecutionContext(executionContextFactory)
+      val keys = seekKeys(state).toSet
+      val shared = nodes.asInstanceOf[LazyIndexSeekIterator]
+      new NodeSteps(nodes, state) {
+        override protected def toRow(node: NodeValue): ExecutionContext = {
+          if (!keys.contains(shared._cachedKey)) {
+            null
+          }
+          else {
+            val newContext = executionContextFactory.copyWith(baseContext, ident, node)
+            // The stored value, not the key it matched, a property the index has no value for is read when used
+            if (needsValues && shared._cachedValue != null) {
+              newContext.setCachedProperty(indexCachedProperties(0), shared._cachedValue)
+            }
+            newContext
+          }
+        }
+      }
+    }
+  }
+
+  override def lockstep: Boolean = true
+
   def canEqual(other: Any): Boolean = other.isInstanceOf[NodeIndexSeekPipe]
 
   override def equals(other: Any): Boolean = other match {
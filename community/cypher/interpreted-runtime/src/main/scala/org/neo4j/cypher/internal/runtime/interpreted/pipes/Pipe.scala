@@ -20,6 +20,7 @@
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.ExecutionContext
+import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.{Expression, FunctionInvocation}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 
 /**
@@ -46,6 +47,22 @@ trait Pipe {
 
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext]
 
+  // TAG: Lazy Implementation
+  def createSteps(state: QueryState): RowSteps = {
+    val decoratedState = state.decorator.decorate(self, state)
+    decoratedState.setExecutionContextFactory(executionContextFactory)
+    internalCreateSteps(decoratedState)
+  }
+
+  // Pipes that don't step on their own produce one row per step until their results run out
+  protected def internalCreateSteps(state: QueryState): RowSteps = RowSteps.fromIterator(internalCreateResults(state))
+
+  // Whether this pipe can run in lockstep with the rest of a batch, reading a shared scan one row per step
+  def lockstep: Boolean = false
+
+  // Whether running the plan of this pipe twice with the same parameters gives the same rows
+  def deterministic: Boolean = Pipe.deterministic(this)
+
   // Used by profiling to identify where to report dbhits and rows
   def id: Id
 
@@ -76,8 +93,37 @@ abstract class PipeWithSource(source: Pipe) extends Pipe {
     throw new UnsupportedOperationException("This method should never be called on PipeWithSource")
 
   protected def internalCreateResults(input:Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext]
+
+  // TAG: Lazy Implementation
+  override def createSteps(state: QueryState): RowSteps = {
+    val sourceSteps = source.createSteps(state)
+
+    val decoratedState = state.decorator.decorate(this, state)
+    decoratedState.setExecutionContextFactory(executionContextFactory)
+    internalCreateSteps(sourceSteps, decoratedState)
+  }
+
+  // Pipes that don't step on their own pull their input until it has a row, so they can't wait on a batch
+  protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps =
+    RowSteps.fromIterator(internalCreateResults(RowSteps.rows(input), state))
   private[pipes] def testCreateResults(input:Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] =
     internalCreateResults(input, state)
 
   def getSource: Pipe = source
 }
+
+// TAG: Lazy Implementation
+object Pipe {
+  // Walks the expressions of a pipe and the pipes below it, through whatever case classes and collections hold them.
+  // Besides rand(), user defined functions may give another value on every call
+  private def deterministic(value: Any): Boolean = value match {
+    case expression: Expression => expression.isDeterministic && !expression.exists {
+      case f: FunctionInvocation => !f.deterministic
+      case _ => false
+    }
+    case values: Iterable[_] => values.forall(deterministic)
+    case values: Array[_] => values.forall(deterministic)
+    case product: Product => product.productIterator.forall(deterministic)
+    case _ => true
+  }
+}
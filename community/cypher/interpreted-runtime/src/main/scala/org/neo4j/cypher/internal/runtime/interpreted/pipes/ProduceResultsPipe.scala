@@ -20,6 +20,7 @@
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
 import org.neo4j.cypher.internal.runtime.{ExecutionContext, ValuePopulation}
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{ROW, Step}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 import org.neo4j.kernel.impl.query.QuerySubscriber
 
@@ -38,20 +39,35 @@ case class ProduceResultsPipe(source: Pipe, columns: Array[String])
     else
       input.map {
         original =>
-          {
-            // TAG: Lazy Implementation
-            if(original == null) {
-              null
-            }
-            else {
-              produce(original, subscriber)
-              original
-            }
-          }
+          produce(original, subscriber)
+          original
+      }
+  }
 
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val subscriber = state.subscriber
+    new RowSteps {
+      override def step(): Step = input.step() match {
+        case ROW =>
+          val original = input.row
+          if (state.prePopulateResults)
+            produceAndPopulate(original, subscriber)
+          else
+            produce(original, subscriber)
+          emit(original)
+        case other => other
       }
+
+      override def finished: Boolean = input.finished
+
+      // Only read, not produced to the subscriber
+      override def partialResult: Iterator[ExecutionContext] = input.partialResult
+    }
   }
 
+  override def lockstep: Boolean = true
+
   private def produceAndPopulate(original: ExecutionContext, subscriber: QuerySubscriber): Unit = {
     var i = 0
     subscriber.onRecord()
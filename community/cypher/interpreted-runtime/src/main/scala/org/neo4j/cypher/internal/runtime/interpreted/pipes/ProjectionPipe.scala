@@ -23,6 +23,7 @@ import org.neo4j.cypher.internal.runtime.ExecutionContext
 import org.neo4j.cypher.internal.runtime.interpreted.CommandProjection
 import org.neo4j.cypher.internal.runtime.interpreted.commands.convert.InterpretedCommandProjection
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.Expression
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{ROW, Step}
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 
 case class ProjectionPipe(source: Pipe, projection: CommandProjection)
@@ -36,17 +37,42 @@ case class ProjectionPipe(source: Pipe, projection: CommandProjection)
     else {
       input.map {
         ctx =>
-          // TAG: Lazy Implementation
-          if(ctx == null) {
-            null
-          }
-          else {
+          projection.project(ctx, state)
+          ctx
+      }
+    }
+  }
+
+  // TAG: Lazy Implementation
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    if (projection.isEmpty)
+      input
+    else {
+      new RowSteps {
+        override def step(): Step = input.step() match {
+          case ROW =>
+            val ctx = input.row
+            projection.project(ctx, state)
+            emit(ctx)
+          case other => other
+        }
+
+        override def finished: Boolean = input.finished
+
+        override def partialResult: Iterator[ExecutionContext] = {
+          val rows = input.partialResult
+          if (rows == null) null
+          else rows.map { row =>
+            val ctx = row.createClone()
             projection.project(ctx, state)
             ctx
           }
+        }
       }
     }
   }
+
+  override def lockstep: Boolean = true
 }
 
 object ProjectionPipe {
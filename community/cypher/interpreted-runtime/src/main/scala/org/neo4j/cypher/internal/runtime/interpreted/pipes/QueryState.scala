@@ -19,12 +19,16 @@
  */
 package org.neo4j.cypher.internal.runtime.interpreted.pipes
 
+import java.util
+
 import org.neo4j.cypher.internal.runtime._
+import org.neo4j.cypher.internal.runtime.interpreted.{LazyBatchWrites, LazyExpandCache, LazyNodeValueCursorIterator, LazyPropertyCache}
 import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.PathValueBuilder
 import org.neo4j.cypher.internal.runtime.interpreted.commands.predicates.{InCheckContainer, SingleThreadedLRUCache}
 import org.neo4j.internal.kernel.api.IndexReadSession
 import org.neo4j.kernel.impl.query.QuerySubscriber
 import org.neo4j.values.AnyValue
+import org.neo4j.values.virtual.NodeValue
 
 class QueryState(val query: QueryContext,
                  val resources: ExternalCSVResource,
@@ -44,6 +48,87 @@ class QueryState(val query: QueryContext,
   private var _pathValueBuilder: PathValueBuilder = _
   private var _exFactory: ExecutionContextFactory = _
 
+  // TAG: Lazy Implementation
+  // Node properties shared with the rest of a lazy batch, null when not batched
+  var lazyPropertyCache: LazyPropertyCache = _
+  def setLazyPropertyCache(cache: LazyPropertyCache): Unit = { lazyPropertyCache = cache }
+
+  // Relationship traversals shared with the rest of a lazy batch, null when not batched
+  var lazyExpandCache: LazyExpandCache = _
+  def setLazyExpandCache(cache: LazyExpandCache): Unit = { lazyExpandCache = cache }
+
+  // Writes of a lazy batch with write operators, null when not batched or the batch only reads
+  var lazyBatchWrites: LazyBatchWrites = _
+  def setLazyBatchWrites(writes: LazyBatchWrites): Unit = { lazyBatchWrites = writes }
+
+  // What the lazy pipes of this execution are batched with. The pipes of a cached plan are shared by every
+  // execution of the same query, so this can't be kept on the pipes themselves
+  private var lazyLeafNodes = new util.IdentityHashMap[Pipe, Iterator[NodeValue]]()
+  private var lazyLabelFiltered = new util.IdentityHashMap[Pipe, java.lang.Boolean]()
+  private var lazyFilterIndexes = new util.IdentityHashMap[Pipe, BatchedPredicateIndex]()
+  private var lazyLeafSteps = new util.ArrayList[NodeSteps]()
+  private var lazyOpenTraversals = util.Collections.newSetFromMap(new util.IdentityHashMap[AutoCloseable, java.lang.Boolean]())
+
+  // The nodes a leaf reads, e.g. a scan shared with the rest of a lazy batch, null until the leaf is set up
+  def leafNodes(leaf: Pipe): Iterator[NodeValue] = lazyLeafNodes.get(leaf)
+  def setLeafNodes(leaf: Pipe, nodes: Iterator[NodeValue]): Unit = {
+    nodes match {
+      case cursor: LazyNodeValueCursorIterator => cursor.retain()
+      case _ =>
+    }
+    releaseNodes(lazyLeafNodes.put(leaf, nodes))
+  }
+
+  def addLeafSteps(steps: NodeSteps): Unit = lazyLeafSteps.add(steps)
+
+  // Traversals of a shared expand cache this execution is reading and hasn't read to the end
+  def openTraversal(reader: AutoCloseable): Unit = lazyOpenTraversals.add(reader)
+  def closeTraversal(reader: AutoCloseable): Unit = lazyOpenTraversals.remove(reader)
+
+  // Done with every scan the leaves of this execution read, a shared scan is closed once no execution reads it and
+  // stops wrapping around for this one, and shared traversals are let go of
+  def releaseLeafNodes(): Unit = {
+    val traversals = lazyOpenTraversals.toArray(new Array[AutoCloseable](0))
+    lazyOpenTraversals.clear()
+    traversals.foreach(_.close())
+    val steps = lazyLeafSteps.iterator()
+    while (steps.hasNext) {
+      steps.next().leave()
+    }
+    lazyLeafSteps.clear()
+    val it = lazyLeafNodes.values().iterator()
+    while (it.hasNext) {
+      releaseNodes(it.next())
+    }
+    lazyLeafNodes.clear()
+  }
+
+  private def releaseNodes(nodes: Iterator[NodeValue]): Unit = nodes match {
+    case cursor: LazyNodeValueCursorIterator => cursor.release()
+    case _ =>
+  }
+
+  // Whether a label scan reads a shared all-nodes scan, so rows without the label have to be skipped
+  def labelFiltered(leaf: Pipe): Boolean = lazyLabelFiltered.containsKey(leaf)
+  def setLabelFiltered(leaf: Pipe, filter: Boolean): Unit =
+    if (filter) lazyLabelFiltered.put(leaf, java.lang.Boolean.TRUE) else lazyLabelFiltered.remove(leaf)
+
+  // The index a filter on the shared scan of a lazy batch is evaluated with, null if it's evaluated on its own
+  def filterIndex(filter: Pipe): BatchedPredicateIndex = lazyFilterIndexes.get(filter)
+  def setFilterIndex(filter: Pipe, index: BatchedPredicateIndex): Unit = lazyFilterIndexes.put(filter, index)
+
+  private def withLazyState(copy: QueryState): QueryState = {
+    copy.lazyPropertyCache = lazyPropertyCache
+    copy.lazyExpandCache = lazyExpandCache
+    copy.lazyBatchWrites = lazyBatchWrites
+    copy.lazyLeafNodes = lazyLeafNodes
+    copy.lazyLabelFiltered = lazyLabelFiltered
+    copy.lazyFilterIndexes = lazyFilterIndexes
+    copy.lazyLeafSteps = lazyLeafSteps
+    copy.lazyOpenTraversals = lazyOpenTraversals
+    copy
+  }
+
   def newExecutionContext(factory: ExecutionContextFactory): ExecutionContext = {
     initialContext match {
       case Some(init) => factory.copyWith(init)
@@ -61,12 +146,12 @@ class QueryState(val query: QueryContext,
   def getStatistics: QueryStatistics = query.getOptStatistics.getOrElse(QueryState.defaultStatistics)
 
   def withDecorator(decorator: PipeDecorator) =
-    new QueryState(query, resources, params, cursors, queryIndexes, expressionVariables, subscriber, memoryTracker, decorator, initialContext,
-                   cachedIn, lenientCreateRelationship, prePopulateResults, input)
+    withLazyState(new QueryState(query, resources, params, cursors, queryIndexes, expressionVariables, subscriber, memoryTracker, decorator, initialContext,
+                                 cachedIn, lenientCreateRelationship, prePopulateResults, input))
 
   def withInitialContext(initialContext: ExecutionContext) =
-    new QueryState(query, resources, params, cursors, queryIndexes, expressionVariables, subscriber, memoryTracker, decorator, Some(initialContext),
-                   cachedIn, lenientCreateRelationship, prePopulateResults, input)
+    withLazyState(new QueryState(query, resources, params, cursors, queryIndexes, expressionVariables, subscriber, memoryTracker, decorator, Some(initialContext),
+                                 cachedIn, lenientCreateRelationship, prePopulateResults, input))
 
   /**
     * When running on the RHS of an Apply, this method will fill an execution context with argument data
@@ -77,8 +162,8 @@ class QueryState(val query: QueryContext,
     .foreach(initData => ctx.copyFrom(initData, nLongs, nRefs))
 
   def withQueryContext(query: QueryContext) =
-    new QueryState(query, resources, params, cursors, queryIndexes, expressionVariables, subscriber, memoryTracker, decorator, initialContext,
-                   cachedIn, lenientCreateRelationship, prePopulateResults, input)
+    withLazyState(new QueryState(query, resources, params, cursors, queryIndexes, expressionVariables, subscriber, memoryTracker, decorator, initialContext,
+                                 cachedIn, lenientCreateRelationship, prePopulateResults, input))
 
   def setExecutionContextFactory(exFactory: ExecutionContextFactory): Unit = {
     _exFactory = exFactory
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted.pipes
+
+import java.util
+
+import org.neo4j.cypher.internal.runtime.ExecutionContext
+import org.neo4j.cypher.internal.runtime.interpreted.LazyNodeValueCursorIterator
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{DONE, NO_ROW, ROW, Step}
+import org.neo4j.values.virtual.NodeValue
+
+import scala.collection.AbstractIterator
+
+// TAG: Lazy Implementation
+/**
+  * Step-wise pull over the rows of a pipe, used to run the queries of a lazy batch in lockstep. A pipe that
+  * steps on its own pulls its input once per step, so every query of a batch reads the same row of the shared
+  * scan at the same step. A step either produces a row, produces nothing at this step, or ends the results.
+  */
+abstract class RowSteps {
+
+  private var _row: ExecutionContext = _
+
+  def step(): Step
+
+  // The row of the last step that returned ROW
+  def row: ExecutionContext = _row
+
+  // True once every further step would return DONE, so the query can leave its batch right after its last row
+  def finished: Boolean = false
+
+  // The rows these steps would produce if the input ended now, e.g. a running count or the current top rows,
+  // or null if nothing below waits for the whole input before producing rows
+  def partialResult: Iterator[ExecutionContext] = null
+
+  protected def emit(row: ExecutionContext): Step = {
+    _row = row
+    ROW
+  }
+}
+
+object RowSteps {
+
+  sealed trait Step
+  case object ROW extends Step
+  case object NO_ROW extends Step
+  case object DONE extends Step
+
+  // Every row of the iterator is a step
+  def fromIterator(rows: Iterator[ExecutionContext]): RowSteps = new RowSteps {
+    override def step(): Step = if (rows.hasNext) emit(rows.next()) else DONE
+  }
+
+  // Steps until the next row, only safe on steps that don't wait for the rest of a batch
+  def rows(steps: RowSteps): Iterator[ExecutionContext] = new AbstractIterator[ExecutionContext] {
+    private var pending: ExecutionContext = _
+    private var done = false
+
+    override def hasNext: Boolean = {
+      while (pending == null && !done) {
+        steps.step() match {
+          case ROW => pending = steps.row
+          case NO_ROW =>
+          case DONE => done = true
+        }
+      }
+      pending != null
+    }
+
+    override def next(): ExecutionContext = {
+      if (!hasNext) Iterator.empty.next()
+      val current = pending
+      pending = null
+      current
+    }
+  }
+}
+
+/**
+  * Steps over a node cursor that may be shared by a batch. The leader of the batch moves the cursor, the
+  * other queries take the row it moved to, each of them at most once. A query that joined a circular scan
+  * part way is done once the scan has wrapped around to the row it started at. Nodes created by the batch
+  * itself are skipped.
+  */
+abstract class NodeSteps(nodes: Iterator[NodeValue], state: QueryState) extends RowSteps {
+
+  private val shared = nodes match {
+    case cursor: LazyNodeValueCursorIterator => cursor
+    case _ => null
+  }
+
+  // Position of the shared cursor when this query last took a row
+  private var taken = -1L
+
+  // Lap and offset of the first row this query took, and whether it holds the scan to a wrap around
+  private var startLap = -1
+  private var startOffset = 0L
+  private var late = false
+  private var done = false
+
+  state.addLeafSteps(this)
+
+  // The row for this node, or null if this query skips it
+  protected def toRow(node: NodeValue): ExecutionContext
+
+  override def step(): Step = {
+    if (done) DONE
+    else if (shared == null) {
+      if (nodes.hasNext) rowOf(nodes.next()) else DONE
+    }
+    else if (shared._useCached) {
+      if (shared._position != taken && shared._cached != null) {
+        taken = shared._position
+        sharedRow()
+      }
+      else if (shared.exhausted) finish()
+      else NO_ROW
+    }
+    else if (shared.hasNext) {
+      shared.next()
+      taken = shared._position
+      sharedRow()
+    }
+    else finish()
+  }
+
+  private def sharedRow(): Step = {
+    if (startLap < 0) {
+      startLap = shared._cachedLap
+      startOffset = shared._cachedOffset
+      if (startOffset > 0) {
+        late = true
+        shared.joinLate()
+      }
+    }
+    else if (shared._cachedLap > startLap + 1 || (shared._cachedLap > startLap && shared._cachedOffset >= startOffset)) {
+      // A scan that shrank since the first lap may never get back to the start row
+      return finish()
+    }
+    rowOf(shared._cached)
+  }
+
+  override def finished: Boolean = done
+
+  // Done with the scan before it is, e.g. after a LIMIT or when the query is cancelled
+  def leave(): Unit = if (!done) finish()
+
+  private def finish(): Step = {
+    if (late && !done) {
+      shared.leaveLate()
+    }
+    done = true
+    DONE
+  }
+
+  private def rowOf(node: NodeValue): Step = {
+    val writes = state.lazyBatchWrites
+    if (writes != null && writes.createdByBatch(node.id())) {
+      return NO_ROW
+    }
+    val row = toRow(node)
+    if (row == null) NO_ROW else emit(row)
+  }
+}
+
+/**
+  * Steps over the rows each input row expands to. The input is still pulled once per step and its rows are
+  * queued, while at most one expansion is started and one element of it is read per step, so a node with many
+  * relationships doesn't hold up the rest of the batch.
+  */
+abstract class ExpandSteps[T](input: RowSteps) extends RowSteps {
+
+  private val pending = new util.ArrayDeque[ExecutionContext]()
+  private var expanding: ExecutionContext = _
+  private var expansion: Iterator[T] = Iterator.empty
+  private var inputDone = false
+
+  protected def expand(row: ExecutionContext): Iterator[T]
+
+  // The row for one element of the expansion of row, or null if that element doesn't produce one
+  protected def toRow(row: ExecutionContext, element: T): ExecutionContext
+
+  override def step(): Step = {
+    if (!inputDone) {
+      input.step() match {
+        case ROW => pending.add(input.row)
+        case DONE => inputDone = true
+        case NO_ROW =>
+      }
+    }
+    if (!expansion.hasNext && !pending.isEmpty) {
+      expanding = pending.poll()
+      expansion = expand(expanding)
+    }
+    if (expansion.hasNext) {
+      val row = toRow(expanding, expansion.next())
+      if (row == null) NO_ROW else emit(row)
+    }
+    else if (inputDone && pending.isEmpty) DONE
+    else NO_ROW
+  }
+
+  override def finished: Boolean = (inputDone || input.finished) && pending.isEmpty && !expansion.hasNext
+}
+
+/**
+  * Steps over a pipe that only produces rows once it has seen its whole input, like an aggregation or a sort.
+  * The input is still pulled once per step, so the pipe keeps up with the rest of a batch, and what the input
+  * seen so far results in can be read at any step as a partial result.
+  */
+abstract class ConsumingSteps(input: RowSteps) extends RowSteps {
+
+  private var results: IndexedSeq[ExecutionContext] = _
+  private var emitted = 0
+
+  protected def consume(row: ExecutionContext): Unit
+
+  // The rows of the input consumed so far, may be called any number of times
+  protected def result(): IndexedSeq[ExecutionContext]
+
+  override def step(): Step = {
+    if (results == null) {
+      input.step() match {
+        case ROW => consume(input.row)
+        case DONE => results = result()
+        case NO_ROW =>
+      }
+      NO_ROW
+    }
+    else if (emitted < results.length) {
+      emitted += 1
+      emit(results(emitted - 1))
+    }
+    else DONE
+  }
+
+  override def finished: Boolean = results != null && emitted >= results.length
+
+  override def partialResult: Iterator[ExecutionContext] = if (results == null) result().iterator else results.iterator
+}
@@ -24,6 +24,8 @@ import java.util.Comparator
 import org.neo4j.cypher.internal.runtime.ExecutionContext
 import org.neo4j.cypher.internal.v4_0.util.attribution.Id
 
+import scala.collection.mutable
+
 case class SortPipe(source: Pipe, comparator: Comparator[ExecutionContext])
                    (val id: Id = Id.INVALID_ID)
   extends PipeWithSource(source) {
@@ -33,4 +35,23 @@ case class SortPipe(source: Pipe, comparator: Comparator[ExecutionContext])
     java.util.Arrays.sort(array, comparator)
     array.toIterator
   }
+
+  // TAG: Lazy Implementation
+  // Buffers one input row per step, the rows seen so far in order are the partial result
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new ConsumingSteps(input) {
+    private val buffer = new mutable.ArrayBuffer[ExecutionContext]()
+
+    override protected def consume(row: ExecutionContext): Unit = {
+      buffer += row
+      state.memoryTracker.allocated(row)
+    }
+
+    override protected def result(): IndexedSeq[ExecutionContext] = {
+      val array = buffer.toArray
+      java.util.Arrays.sort(array, comparator)
+      array
+    }
+  }
+
+  override def lockstep: Boolean = true
 }
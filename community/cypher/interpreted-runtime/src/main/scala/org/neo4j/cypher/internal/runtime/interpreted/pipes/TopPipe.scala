@@ -44,16 +44,7 @@ case class TopNPipe(source: Pipe, countExpression: Expression, comparator: Compa
   private val initialFallbackSortArraySize = Int.MaxValue / 8 // This should not be too big so as to risk out-of-memory on the first allocation
 
   protected override def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
-    val limitNumber = NumericHelper.asNumber(countExpression(state.newExecutionContext(executionContextFactory), state))
-    if (limitNumber.isInstanceOf[FloatingPointValue]) {
-      val limit = limitNumber.doubleValue()
-      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
-    }
-    val limit = limitNumber.longValue()
-
-    if (limit < 0) {
-      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
-    }
+    val limit = evaluateLimit(state)
 
     if (limit == 0 || input.isEmpty) return empty
 
@@ -93,6 +84,70 @@ case class TopNPipe(source: Pipe, countExpression: Expression, comparator: Compa
       topTable.iterator.asScala
     }
   }
+
+  // TAG: Lazy Implementation
+  // Adds one input row per step to the top rows, the current top rows are the partial result
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = {
+    val limit = evaluateLimit(state)
+
+    if (limit == 0) RowSteps.fromIterator(empty)
+    else if (limit > Int.MaxValue) {
+      // Same fallback on a full sort as above
+      new ConsumingSteps(input) {
+        private val buffer = new mutable.ArrayBuffer[ExecutionContext]()
+
+        override protected def consume(row: ExecutionContext): Unit = {
+          buffer += row
+          state.memoryTracker.allocated(row)
+        }
+
+        override protected def result(): IndexedSeq[ExecutionContext] = {
+          val array = buffer.toArray
+          java.util.Arrays.sort(array, comparator)
+          array
+        }
+      }
+    }
+    else {
+      val count = limit.toInt
+      val topTable = new DefaultComparatorTopTable(comparator, count)
+
+      new ConsumingSteps(input) {
+        private var i = 1
+
+        override protected def consume(row: ExecutionContext): Unit = {
+          topTable.add(row)
+          if (i < count) {
+            state.memoryTracker.allocated(row)
+          }
+          i += 1
+        }
+
+        // Sorting the table would empty it, so the top rows are sorted on the side
+        override protected def result(): IndexedSeq[ExecutionContext] = {
+          val array = topTable.unorderedIterator().asScala.toArray
+          java.util.Arrays.sort(array, comparator)
+          array
+        }
+      }
+    }
+  }
+
+  override def lockstep: Boolean = true
+
+  private def evaluateLimit(state: QueryState): Long = {
+    val limitNumber = NumericHelper.asNumber(countExpression(state.newExecutionContext(executionContextFactory), state))
+    if (limitNumber.isInstanceOf[FloatingPointValue]) {
+      val limit = limitNumber.doubleValue()
+      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
+    }
+    val limit = limitNumber.longValue()
+
+    if (limit < 0) {
+      throw new InvalidArgumentException(s"LIMIT: Invalid input. '$limit' is not a valid value. Must be a non-negative integer.")
+    }
+    limit
+  }
 }
 
 /*
@@ -119,6 +174,22 @@ case class Top1Pipe(source: Pipe, comparator: Comparator[ExecutionContext])
       Iterator.single(result)
     }
   }
+
+  // TAG: Lazy Implementation
+  // Keeps the best row seen so far, which is also the partial result
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new ConsumingSteps(input) {
+    private var best: ExecutionContext = _
+
+    override protected def consume(row: ExecutionContext): Unit = {
+      if (best == null || comparator.compare(row, best) < 0) {
+        best = row
+      }
+    }
+
+    override protected def result(): IndexedSeq[ExecutionContext] = if (best == null) IndexedSeq.empty else IndexedSeq(best)
+  }
+
+  override def lockstep: Boolean = true
 }
 
 /*
@@ -153,6 +224,32 @@ case class Top1WithTiesPipe(source: Pipe, comparator: Comparator[ExecutionContex
     }
   }
 
+  // TAG: Lazy Implementation
+  // Keeps the rows tied for first seen so far, which are also the partial result
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps = new ConsumingSteps(input) {
+    private val matchingRows = new mutable.ArrayBuffer[ExecutionContext]()
+
+    override protected def consume(row: ExecutionContext): Unit = {
+      if (matchingRows.isEmpty) {
+        matchingRows += row
+      }
+      else {
+        val comparison = comparator.compare(row, matchingRows.head)
+        if (comparison < 0) { // Found a new best
+          matchingRows.clear()
+          matchingRows += row
+        }
+        else if (comparison == 0) { // Found a tie
+          matchingRows += row
+        }
+      }
+    }
+
+    override protected def result(): IndexedSeq[ExecutionContext] = matchingRows.toVector
+  }
+
+  override def lockstep: Boolean = true
+
   @inline
   private def init(first: ExecutionContext) = {
     val builder = Vector.newBuilder[ExecutionContext]
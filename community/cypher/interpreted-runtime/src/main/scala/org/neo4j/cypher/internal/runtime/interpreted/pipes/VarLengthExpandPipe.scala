@@ -121,6 +121,30 @@ case class VarLengthExpandPipe(source: Pipe,
     }
   }
 
+  // TAG: Lazy Implementation
+  // Takes one path of the traversal per step, so a step reads the relationships of at most one node
+  override protected def internalCreateSteps(input: RowSteps, state: QueryState): RowSteps =
+    new ExpandSteps[(NodeValue, RelationshipContainer)](input) {
+      override protected def expand(row: ExecutionContext): Iterator[(NodeValue, RelationshipContainer)] = {
+        val n = row.getByName(fromName) match {
+          case node: NodeValue => node
+          case nodeRef: NodeReference => state.query.nodeOps.getById(nodeRef.id)
+          case IsNoValue() => null
+          case value => throw new InternalException(s"Expected to find a node at '$fromName' but found $value instead")
+        }
+        if (n != null && filteringStep.filterNode(row, state)(n)) varLengthExpand(n, state, max, row)
+        else Iterator.empty
+      }
+
+      override protected def toRow(row: ExecutionContext, path: (NodeValue, RelationshipContainer)): ExecutionContext = {
+        val (node, rels) = path
+        if (rels.size >= min && isToNodeValid(row, state, node)) executionContextFactory.copyWith(row, relName, rels.asList, toName, node)
+        else null
+      }
+    }
+
+  override def lockstep: Boolean = true
+
   private def isToNodeValid(row: ExecutionContext, state: QueryState, node: VirtualNodeValue): Boolean =
     !nodeInScope || {
       row.getByName(toName) match {
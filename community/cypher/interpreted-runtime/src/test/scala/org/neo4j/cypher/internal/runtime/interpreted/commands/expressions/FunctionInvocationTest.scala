@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted.commands.expressions
+
+import org.neo4j.cypher.internal.logical.plans.{QualifiedName, UserFunctionSignature}
+import org.neo4j.cypher.internal.v4_0.util.symbols._
+import org.neo4j.cypher.internal.v4_0.util.test_helpers.CypherFunSuite
+
+class FunctionInvocationTest extends CypherFunSuite {
+
+  test("clock variants of the temporal functions are nondeterministic") {
+    for (temporal <- Seq("date", "datetime", "localdatetime", "time", "localtime");
+         clock <- Seq("realtime", "statement")) {
+      invocation(s"$temporal.$clock").deterministic should be(false)
+    }
+    invocation("datetime").deterministic should be(false)
+    invocation("date", LiteralMap(Map("timezone" -> Literal("UTC")))).deterministic should be(false)
+  }
+
+  test("temporals parsed from a string and the transaction clock are deterministic") {
+    invocation("date", Literal("2020-01-01")).deterministic should be(true)
+    invocation("datetime.transaction").deterministic should be(true)
+    invocation("duration.between", Variable("a"), Variable("b")).deterministic should be(true)
+  }
+
+  test("other user defined functions are nondeterministic") {
+    invocation("randomUUID").deterministic should be(false)
+    invocation("my.counter.next").deterministic should be(false)
+  }
+
+  private def invocation(name: String, input: Expression*): FunctionInvocation = {
+    val parts = name.split('.')
+    val signature = UserFunctionSignature(QualifiedName(parts.init.toSeq, parts.last), IndexedSeq.empty, CTAny, None,
+      Array.empty, None, isAggregate = false, id = 0)
+    FunctionInvocation(signature, input.toArray)
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted.pipes
+
+import org.mockito.ArgumentMatchers.{any, anyBoolean, anyInt, anyLong, eq => is}
+import org.mockito.Mockito._
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.neo4j.cypher.internal.runtime.{ExecutionContext, NodeOperations, QueryContext}
+import org.neo4j.cypher.internal.runtime.interpreted.QueryStateHelper
+import org.neo4j.cypher.internal.runtime.interpreted.commands.expressions.{Expression, Literal, Property, Variable}
+import org.neo4j.cypher.internal.runtime.interpreted.commands.predicates._
+import org.neo4j.cypher.internal.runtime.interpreted.commands.values.{KeyToken, TokenType}
+import org.neo4j.cypher.internal.v4_0.util.test_helpers.CypherFunSuite
+import org.neo4j.internal.kernel.api.{NodeCursor, PropertyCursor}
+import org.neo4j.values.storable.{Value, Values}
+import org.neo4j.values.virtual.VirtualValues
+
+class BatchedPredicateIndexTest extends CypherFunSuite {
+
+  private val AGE = 1
+  private val NAME = 2
+
+  private val age = Property(Variable("n"), KeyToken.Resolved("age", AGE, TokenType.PropertyKey))
+  private val name = Property(Variable("n"), KeyToken.Resolved("name", NAME, TokenType.PropertyKey))
+
+  private val properties = Map(
+    1L -> Map(AGE -> Values.intValue(30), NAME -> Values.stringValue("b")),
+    2L -> Map(AGE -> Values.intValue(22), NAME -> Values.stringValue("a")),
+    3L -> Map(AGE -> Values.intValue(45), NAME -> Values.stringValue("c")),
+    4L -> Map(AGE -> Values.intValue(35), NAME -> Values.stringValue("d")))
+
+  // States of the members of the last batch, in slot order
+  private var states: Seq[QueryState] = Seq.empty
+
+  test("equalities and ranges of every member are answered from one read of each property") {
+    // given
+    val nodeOps = mock[NodeOperations]
+    val index = batch(nodeOps,
+      Equals(age, Literal(30)),
+      Ands(GreaterThan(age, Literal(20)), LessThanOrEqual(age, Literal(40))),
+      LessThan(age, Literal(25)),
+      GreaterThanOrEqual(Literal(40), age),
+      Ands(Equals(age, Literal(30)), Equals(name, Literal("b"))),
+      LessThan(age, Literal("x")))
+
+    // then
+    matches(index, 1L) should equal(Seq(true, true, false, true, true, false))
+    matches(index, 2L) should equal(Seq(false, true, true, true, false, false))
+    matches(index, 3L) should equal(Seq(false, false, false, false, false, false))
+    matches(index, 4L) should equal(Seq(false, true, false, true, false, false))
+    for (node <- 1L to 4L) {
+      verify(nodeOps, times(1)).getProperty(is(node), is(AGE), any[NodeCursor](), any[PropertyCursor](), anyBoolean())
+      verify(nodeOps, times(1)).getProperty(is(node), is(NAME), any[NodeCursor](), any[PropertyCursor](), anyBoolean())
+    }
+  }
+
+  test("bounds equal to the property value only hold for inclusive comparisons") {
+    // given
+    val index = batch(mock[NodeOperations],
+      LessThan(age, Literal(30)),
+      LessThanOrEqual(age, Literal(30)),
+      GreaterThan(age, Literal(30)),
+      GreaterThanOrEqual(age, Literal(30)))
+
+    // then
+    matches(index, 1L) should equal(Seq(false, true, false, true))
+  }
+
+  test("comparisons that aren't indexed stay with their member") {
+    // given
+    val index = batch(mock[NodeOperations],
+      Ands(GreaterThanOrEqual(age, Literal(30)), Not(Equals(age, Literal(35)))),
+      Not(Equals(name, Literal("a"))))
+
+    // then
+    index.indexedMembers should equal(1)
+    matches(index, 1L) should equal(Seq(true, true))
+    matches(index, 2L) should equal(Seq(false, false))
+    matches(index, 4L) should equal(Seq(false, true))
+  }
+
+  test("states that aren't part of the batch have no slot") {
+    batch(mock[NodeOperations], Equals(age, Literal(30))).slotOf(QueryStateHelper.empty) should equal(-1)
+  }
+
+  private def batch(nodeOps: NodeOperations, predicates: Expression*): BatchedPredicateIndex = {
+    when(nodeOps.getProperty(anyLong(), anyInt(), any[NodeCursor](), any[PropertyCursor](), anyBoolean())).thenAnswer(new Answer[Value] {
+      override def answer(invocation: InvocationOnMock): Value =
+        properties(invocation.getArgument[java.lang.Long](0))(invocation.getArgument[Integer](1))
+    })
+    val query = mock[QueryContext]
+    when(query.nodeOps).thenReturn(nodeOps)
+
+    val index = new BatchedPredicateIndex
+    states = predicates.map { predicate =>
+      val state = QueryStateHelper.emptyWith(query = query)
+      index.add(FilterPipe(ArgumentPipe()(), predicate)(), "n", state)
+      state
+    }
+    index.attach()
+    states.foreach(state => index.slotOf(state) should be >= 0)
+    index
+  }
+
+  // Whether each member passes the node, tested the way a batch steps through it, every member at the same row
+  private def matches(index: BatchedPredicateIndex, node: Long): Seq[Boolean] = {
+    val row = ExecutionContext.from("n" -> VirtualValues.node(node))
+    states.map(state => index.test(index.slotOf(state), row, state))
+  }
+}
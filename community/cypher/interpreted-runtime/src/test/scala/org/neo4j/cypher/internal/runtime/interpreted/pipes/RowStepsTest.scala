@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.runtime.interpreted.pipes
+
+import org.neo4j.cypher.internal.runtime.ExecutionContext
+import org.neo4j.cypher.internal.runtime.interpreted.pipes.RowSteps.{DONE, NO_ROW, ROW, Step}
+import org.neo4j.cypher.internal.runtime.interpreted.{LazyBatchWrites, LazyNodeValueCursorIterator, QueryStateHelper}
+import org.neo4j.cypher.internal.v4_0.util.test_helpers.CypherFunSuite
+import org.neo4j.values.storable.Values
+import org.neo4j.values.virtual.{NodeValue, VirtualValues}
+
+import scala.collection.mutable.ArrayBuffer
+
+class RowStepsTest extends CypherFunSuite {
+
+  private val nodes = (1L to 5L).map(id => VirtualValues.nodeValue(id, Values.stringArray(), VirtualValues.EMPTY_MAP)).toArray
+
+  test("every row of an iterator is one step") {
+    val steps = RowSteps.fromIterator(Iterator(row(1), row(2)))
+
+    steps.step() should equal(ROW)
+    steps.row should equal(row(1))
+    steps.step() should equal(ROW)
+    steps.row should equal(row(2))
+    steps.step() should equal(DONE)
+  }
+
+  test("rows steps past steps without a row") {
+    val steps = new RowSteps {
+      private val pattern = Iterator[ExecutionContext](null, row(1), null, null, row(2))
+      override def step(): Step =
+        if (!pattern.hasNext) DONE
+        else pattern.next() match {
+          case null => NO_ROW
+          case ctx => emit(ctx)
+        }
+    }
+
+    RowSteps.rows(steps).toList should equal(List(row(1), row(2)))
+  }
+
+  test("a query joining a shared scan late reads the rows it missed on another lap") {
+    // given
+    val cursor = new ScanCursor(nodes)
+    val leader = nodeSteps(cursor)
+    val batch = ArrayBuffer(leader)
+    val rows = Map(leader -> ArrayBuffer[Long]())
+    stepBatch(cursor, batch, rows, rounds = 2)
+
+    // when
+    val joiner = nodeSteps(cursor)
+    batch += joiner
+    val allRows = rows + (joiner -> ArrayBuffer[Long]())
+    stepBatch(cursor, batch, allRows, rounds = 10)
+
+    // then
+    allRows(leader) should equal(Seq(1L, 2L, 3L, 4L, 5L))
+    allRows(joiner) should equal(Seq(3L, 4L, 5L, 1L, 2L))
+    leader.finished should equal(true)
+    joiner.finished should equal(true)
+    cursor.rewinds should equal(1)
+    cursor._lateJoiners should equal(0)
+  }
+
+  test("a shared scan only wraps around while a late joiner needs it") {
+    // given
+    val cursor = new ScanCursor(nodes)
+    val leader = nodeSteps(cursor)
+    val batch = ArrayBuffer(leader)
+    val rows = Map(leader -> ArrayBuffer[Long]())
+    stepBatch(cursor, batch, rows, rounds = 2)
+
+    // when
+    val joiner = nodeSteps(cursor)
+    batch += joiner
+    stepBatch(cursor, batch, rows + (joiner -> ArrayBuffer[Long]()), rounds = 1)
+    joiner.leave()
+    batch -= joiner
+    stepBatch(cursor, batch, rows, rounds = 10)
+
+    // then
+    rows(leader) should equal(Seq(1L, 2L, 3L, 4L, 5L))
+    cursor.rewinds should equal(0)
+    cursor._lateJoiners should equal(0)
+  }
+
+  test("nodes created by the batch are skipped") {
+    // given
+    val state = QueryStateHelper.empty
+    val writes = new LazyBatchWrites
+    writes.nodeCreated(3)
+    state.setLazyBatchWrites(writes)
+    val steps = new NodeSteps(nodes.iterator, state) {
+      override protected def toRow(node: NodeValue): ExecutionContext = ExecutionContext.from("n" -> node)
+    }
+
+    // then
+    val taken = Iterator.continually(steps.step()).takeWhile(_ != DONE).toList
+    taken should equal(List(ROW, ROW, NO_ROW, ROW, ROW))
+  }
+
+  test("consuming steps produce their rows once the input is done, and a partial result before") {
+    // given
+    val steps = countingSteps(row(1), row(2), row(3))
+
+    // when
+    steps.step() should equal(NO_ROW)
+
+    // then
+    steps.partialResult.toList should equal(List(count(1)))
+    steps.step() should equal(NO_ROW)
+    steps.step() should equal(NO_ROW)
+    steps.step() should equal(NO_ROW)
+    steps.step() should equal(ROW)
+    steps.row should equal(count(3))
+    steps.step() should equal(DONE)
+  }
+
+  test("consuming steps are finished with their last row") {
+    // given
+    val steps = countingSteps(row(1))
+    steps.step() should equal(NO_ROW)
+    steps.step() should equal(NO_ROW)
+
+    // then
+    steps.finished should equal(false)
+    steps.step() should equal(ROW)
+    steps.finished should equal(true)
+  }
+
+  private def row(i: Long): ExecutionContext = ExecutionContext.from("x" -> Values.longValue(i))
+
+  private def count(i: Long): ExecutionContext = ExecutionContext.from("count" -> Values.longValue(i))
+
+  private def countingSteps(rows: ExecutionContext*): ConsumingSteps = new ConsumingSteps(RowSteps.fromIterator(rows.iterator)) {
+    private var count = 0
+    override protected def consume(row: ExecutionContext): Unit = count += 1
+    override protected def result(): IndexedSeq[ExecutionContext] = IndexedSeq(ExecutionContext.from("count" -> Values.longValue(count)))
+  }
+
+  private def nodeSteps(cursor: ScanCursor): NodeSteps = new NodeSteps(cursor, QueryStateHelper.empty) {
+    override protected def toRow(node: NodeValue): ExecutionContext = ExecutionContext.from("n" -> node)
+  }
+
+  // Steps the batch the way a lazy batch is propagated, the first member leads and the rest take its row. Members
+  // leave once they are done, so the next one leads
+  private def stepBatch(cursor: ScanCursor, batch: ArrayBuffer[NodeSteps], rows: Map[NodeSteps, ArrayBuffer[Long]], rounds: Int): Unit = {
+    for (_ <- 0 until rounds) {
+      var i = 0
+      while (i < batch.size) {
+        cursor.setUseCached(i > 0)
+        val member = batch(i)
+        member.step() match {
+          case ROW =>
+            rows(member) += member.row.getByName("n").asInstanceOf[NodeValue].id()
+            i += 1
+          case NO_ROW =>
+            i += 1
+          case DONE =>
+            batch.remove(i)
+        }
+      }
+    }
+  }
+
+  // A circular scan over nodes
+  class ScanCursor(nodes: Array[NodeValue], private var offset: Int = 0) extends LazyNodeValueCursorIterator {
+    var rewinds = 0
+
+    override protected def fetchNext(): NodeValue =
+      if (offset < nodes.length) {
+        offset += 1
+        nodes(offset - 1)
+      }
+      else null
+
+    override protected def rewind(): Boolean = {
+      offset = 0
+      rewinds += 1
+      true
+    }
+
+    override def circular: Boolean = true
+
+    override protected def close(): Unit = {}
+  }
+}
@@ -124,6 +124,11 @@ trait QueryContext extends TokenContext with DbAccess {
 
   def getNodesByLabelPrimitive(id: Int): LongIterator
 
+  // TAG: Lazy Implementation
+  def getNodesByIndexSeek(index: IndexReadSession, propertyId: Int, keys: Array[Value]): Iterator[NodeValue]
+
+  def getNodesByIndexScan(index: IndexReadSession): Iterator[NodeValue]
+
   /* return true if the constraint was created, false if preexisting, throws if failed */
   def createNodeKeyConstraint(labelId: Int, propertyKeyIds: Seq[Int], name: Option[String]): Unit
 
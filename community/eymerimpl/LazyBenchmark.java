@@ -0,0 +1,282 @@
+package eymerimpl;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+   Replays a trace of operations, see TraceGenerator, against a graph, once through lazyExecute and once through
+   plain execute, for every combination of the given thread counts, stride sizes and batch sizes. Each run writes
+   one JSON object per line to out, and to stdout, with its throughput and p50/p99/p999 latency.
+
+   Latency runs from the time an operation was due to arrive in the trace to the time its last row was produced,
+   so a replay that falls behind the trace counts the wait. Lazy operations go through lazyExecuteAsync and plain
+   ones each run in a transaction of their own on a pool of threads, both collect every row of their result.
+   threads is the number of propagation workers for lazy runs and the size of the pool for plain ones, stride and
+   batch sizes only apply to lazy runs.
+
+   Arguments are key=value, e.g.
+     graph=/tmp/user-graph operations=/tmp/traces/operations/Users1000Cypher.txt
+     intervals=/tmp/traces/intervals/intervals-10-1000.txt count=1000 modes=lazy,eager threads=1,2,4
+     strides=42000,84000 batches=10,20 out=results.jsonl
+*/
+public class LazyBenchmark {
+    static String database_name = "neo4j";
+
+    public static void main(String[] args) {
+        Map<String, String> options = options(args);
+        File graph_file = new File(options.getOrDefault("graph", "user-graph"));
+        File out_file = new File(options.getOrDefault("out", "lazy-benchmark.jsonl"));
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "lazy,eager").split(","));
+        int[] threads = integers(options.getOrDefault("threads", "1,2,4"));
+        int[] strides = integers(options.getOrDefault("strides", "42000"));
+        int[] batches = integers(options.getOrDefault("batches", "10"));
+
+        DatabaseManagementService dbms = new DatabaseManagementServiceBuilder(graph_file).build();
+        GraphDatabaseService graphdb = dbms.database(database_name);
+        try (PrintWriter out = new PrintWriter(new FileWriter(out_file))) {
+            Trace trace = Trace.read(new File(options.get("operations")), new File(options.get("intervals")),
+                                     Integer.parseInt(options.getOrDefault("count", "-1")));
+            for(int num_threads : threads) {
+                if(modes.contains("lazy")) {
+                    for(int stride_size : strides) {
+                        for(int max_batch_size : batches) {
+                            report(out, replayLazy(graphdb, trace, num_threads, stride_size, max_batch_size));
+                        }
+                    }
+                }
+                if(modes.contains("eager")) {
+                    report(out, replayEager(graphdb, trace, num_threads));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.out.println(e.toString());
+            System.exit(1);
+        }
+        finally {
+            dbms.shutdown();
+        }
+    }
+
+    public static Run replayLazy(GraphDatabaseService graphdb, Trace trace, int num_threads, int stride_size, int max_batch_size) {
+        Run run = new Run("lazy", num_threads, stride_size, max_batch_size, trace.size());
+        try (Transaction tx = graphdb.beginTx()) {
+            tx.setNumThreads(num_threads);
+            tx.setStrideSize(() -> stride_size);
+            tx.setMaxBatchSize(() -> max_batch_size);
+            tx.startPropagation();
+
+            List<CompletableFuture<?>> completions = new ArrayList<>();
+            run.start();
+            for(int i = 0; i < trace.size(); i++) {
+                long due = run.started_at + TimeUnit.MILLISECONDS.toNanos(trace.arrivals[i]);
+                parkFormingBatches(tx, due);
+                int num = i;
+                completions.add(tx.lazyExecuteAsync(trace.operations[i], Collections.emptyMap())
+                                  .whenComplete((rows, failure) -> run.finished(num, due, failure == null)));
+            }
+            while(tx.operationsRemaining() > 0) {
+                parkFormingBatches(tx, System.nanoTime() + BATCH_POLL_NANOS);
+            }
+            CompletableFuture.allOf(completions.toArray(new CompletableFuture[0])).handle((v, failure) -> null).join();
+            run.stop();
+
+            tx.stopPropagation();
+            tx.rollback();
+        }
+        return run;
+    }
+
+    // Operations waiting for partners may become ready to batch while nothing arrives, so batches are formed again
+    // every BATCH_POLL_NANOS while parked until due
+    static final long BATCH_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    static void parkFormingBatches(Transaction tx, long due) {
+        for(long now = System.nanoTime(); now < due; now = System.nanoTime()) {
+            LockSupport.parkNanos(Math.min(due - now, BATCH_POLL_NANOS));
+            tx.batchDelayed();
+        }
+    }
+
+    public static Run replayEager(GraphDatabaseService graphdb, Trace trace, int num_threads) {
+        Run run = new Run("eager", num_threads, 0, 0, trace.size());
+        ExecutorService pool = Executors.newFixedThreadPool(num_threads);
+        run.start();
+        for(int i = 0; i < trace.size(); i++) {
+            long due = run.started_at + TimeUnit.MILLISECONDS.toNanos(trace.arrivals[i]);
+            while(System.nanoTime() < due) {
+                LockSupport.parkNanos(due - System.nanoTime());
+            }
+            String operation = trace.operations[i];
+            int num = i;
+            pool.execute(() -> {
+                boolean success = true;
+                try (Transaction tx = graphdb.beginTx(); Result result = tx.execute(operation)) {
+                    while(result.hasNext()) {
+                        result.next();
+                    }
+                }
+                catch(Exception e) {
+                    success = false;
+                }
+                run.finished(num, due, success);
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        run.stop();
+        return run;
+    }
+
+    static void report(PrintWriter out, Run run) {
+        String line = run.toJson();
+        out.println(line);
+        out.flush();
+        System.out.println(line);
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args) {
+            int split = arg.indexOf('=');
+            if(split <= 0) {
+                System.out.println("Error: arguments are key=value, got " + arg);
+                System.exit(1);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+
+    static int[] integers(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // Operations and their arrival times in ms from the start of the replay, in the order they arrive
+    static class Trace {
+        final String[] operations;
+        final long[] arrivals;
+
+        Trace(String[] operations, long[] arrivals) {
+            this.operations = operations;
+            this.arrivals = arrivals;
+        }
+
+        int size() {
+            return this.operations.length;
+        }
+
+        // At most count operations, all of them if count is negative
+        static Trace read(File operation_file, File interval_file, int count) throws IOException {
+            List<String> operations = Files.readAllLines(operation_file.toPath());
+            List<String> intervals = Files.readAllLines(interval_file.toPath());
+            int size = Math.min(operations.size(), intervals.size());
+            if(count >= 0) {
+                size = Math.min(size, count);
+            }
+            long[] arrivals = new long[size];
+            for(int i = 0; i < size; i++) {
+                arrivals[i] = Long.parseLong(intervals.get(i).trim());
+            }
+            return new Trace(operations.subList(0, size).toArray(new String[0]), arrivals);
+        }
+    }
+
+    // Latencies of one replay, in ns, recorded from whichever thread completes an operation
+    static class Run {
+        final String mode;
+        final int num_threads;
+        final int stride_size;
+        final int max_batch_size;
+        final AtomicLongArray latencies;
+        final AtomicInteger failed = new AtomicInteger();
+        long started_at;
+        long duration;
+
+        Run(String mode, int num_threads, int stride_size, int max_batch_size, int operations) {
+            this.mode = mode;
+            this.num_threads = num_threads;
+            this.stride_size = stride_size;
+            this.max_batch_size = max_batch_size;
+            this.latencies = new AtomicLongArray(operations);
+            for(int i = 0; i < operations; i++) {
+                this.latencies.set(i, -1);
+            }
+        }
+
+        void start() {
+            this.started_at = System.nanoTime();
+        }
+
+        void stop() {
+            this.duration = System.nanoTime() - this.started_at;
+        }
+
+        void finished(int num, long due, boolean success) {
+            if(success) {
+                this.latencies.set(num, Math.max(0, System.nanoTime() - due));
+            }
+            else {
+                this.failed.incrementAndGet();
+            }
+        }
+
+        String toJson() {
+            long[] sorted = new long[this.latencies.length()];
+            int completed = 0;
+            for(int i = 0; i < sorted.length; i++) {
+                if(this.latencies.get(i) >= 0) {
+                    sorted[completed++] = this.latencies.get(i);
+                }
+            }
+            sorted = Arrays.copyOf(sorted, completed);
+            Arrays.sort(sorted);
+            double seconds = this.duration / 1e9;
+            return String.format(Locale.ROOT,
+                    "{\"mode\":\"%s\",\"threads\":%d,\"stride_size\":%d,\"max_batch_size\":%d,\"operations\":%d," +
+                    "\"completed\":%d,\"failed\":%d,\"duration_ms\":%.3f,\"throughput_ops_per_s\":%.3f," +
+                    "\"p50_ms\":%.3f,\"p99_ms\":%.3f,\"p999_ms\":%.3f,\"max_ms\":%.3f}",
+                    this.mode, this.num_threads, this.stride_size, this.max_batch_size, this.latencies.length(),
+                    completed, this.failed.get(), this.duration / 1e6, seconds > 0 ? completed / seconds : 0.0,
+                    percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    percentile(sorted, 1.0));
+        }
+
+        // Nearest rank, in ms
+        static double percentile(long[] sorted, double fraction) {
+            if(sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1e6;
+        }
+    }
+}
@@ -25,13 +25,25 @@ public class Tester {
      *
      * AllNodesScan
      * NodesByLabelScan
+     * NodeIndexSeek (exact, single property)
+     * NodeIndexScan
      * ProduceResults
      * Filter
      * Limit
      * Projection
+     * ExpandAll
+     * ExpandInto
+     * VarLengthExpand
+     * NodeHashJoin
+     * EagerAggregation (partial result: running aggregates)
+     * Sort, Top (partial result: rows so far in order)
+     * Distinct
      *
      * Create
      * Delete
+     * EmptyResult
+     *
+     * Plans with any other pipe still run lazily, but alone instead of sharing a scan
      */
 
     public static void iteratorTest(Transaction tx) {
@@ -70,7 +82,13 @@ public class Tester {
             Knob so_knob = new DiscreteKnob("stride-size", KnobValT.haveIntegers(118000,236000,472000,944000)); // 1%,2%,4%,8%
             Knob github_knob = new DiscreteKnob("stride-size", KnobValT.haveIntegers(44000,88000,176000,352000)); // 1%,2%,4%,8%
 
-            AeneasMachine aeneas = new AeneasMachine(StochasticPolicyType.NO_STOCHASTIC, new Knob[]{twitter_knob}, reward);
+            Knob batch_knob = new DiscreteKnob("max-batch-size", KnobValT.haveIntegers(5, 10, 20, 40));
+
+            AeneasMachine aeneas = new AeneasMachine(StochasticPolicyType.NO_STOCHASTIC, new Knob[]{twitter_knob, batch_knob}, reward);
+
+            // Propagation reads whichever configuration the bandit has selected
+            tx.setStrideSize(() -> (Integer) aeneas.read("stride-size").value());
+            tx.setMaxBatchSize(() -> (Integer) aeneas.read("max-batch-size").value());
             aeneas.start();
 
 
@@ -96,6 +114,7 @@ public class Tester {
         try (Transaction tx = graphdb.beginTx()) {
 
             tx.setNumThreads(2);
+            tx.setPrintResults(true);
 
             Scanner operation_stream =
                     new Scanner(new File(operationLocation + "UsersUnique1000Cypher.txt"));
@@ -0,0 +1,159 @@
+package eymerimpl;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+   Generates the inputs of LazyBenchmark: a user graph, and a trace of operations on it with their arrival times.
+   Users have an id, an age and a name, and follow a number of random other users. The trace is written the way
+   Tester reads it, one Cypher query per line in operations/ and, on the same line of intervals/, the time in ms
+   from the start of the replay at which it arrives. Arrivals are a Poisson process of the given rate.
+
+   Arguments are key=value, e.g.
+     graph=/tmp/user-graph traces=/tmp/traces users=100000 follows=10 operations=1000 rate=10 seed=42
+   graph_only=true or trace_only=true skip the other half.
+*/
+public class TraceGenerator {
+    static final String USER_BATCH = "UNWIND range($from, $to) AS i CREATE (:User {id: i, age: 18 + i % 60, name: 'user' + i})";
+    static final String FOLLOWS_BATCH = "UNWIND $pairs AS p MATCH (a:User {id: p[0]}), (b:User {id: p[1]}) CREATE (a)-[:FOLLOWS]->(b)";
+    static final int WRITES_PER_TX = 10000;
+
+    // Kinds of operations in the trace, drawn with these weights
+    static final String[] OPERATIONS = {
+            "MATCH (n:User) WHERE n.id = %d RETURN n;",
+            "MATCH (n:User) WHERE n.age >= %d AND n.age < %d RETURN n.id;",
+            "MATCH (n:User) WHERE n.age = %d RETURN count(n);",
+            "MATCH (n:User)-[:FOLLOWS]->(m) WHERE n.id = %d RETURN m.id;",
+            "MATCH (n:User) WHERE n.age > %d RETURN n.id ORDER BY n.id LIMIT 10;"
+    };
+    static final int[] WEIGHTS = {40, 20, 15, 15, 10};
+
+    public static void main(String[] args) {
+        Map<String, String> options = LazyBenchmark.options(args);
+        File graph_file = new File(options.getOrDefault("graph", "user-graph"));
+        File trace_dir = new File(options.getOrDefault("traces", "traces"));
+        int users = Integer.parseInt(options.getOrDefault("users", "100000"));
+        int follows = Integer.parseInt(options.getOrDefault("follows", "10"));
+        int operations = Integer.parseInt(options.getOrDefault("operations", "1000"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "10"));
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "42")));
+
+        try {
+            if(!Boolean.parseBoolean(options.getOrDefault("trace_only", "false"))) {
+                generateGraph(graph_file, users, follows, random);
+            }
+            if(!Boolean.parseBoolean(options.getOrDefault("graph_only", "false"))) {
+                generateTrace(trace_dir, users, operations, rate, random);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.out.println(e.toString());
+            System.exit(1);
+        }
+    }
+
+    public static void generateGraph(File graph_file, int users, int follows, Random random) {
+        DatabaseManagementService dbms = new DatabaseManagementServiceBuilder(graph_file).build();
+        GraphDatabaseService graphdb = dbms.database(LazyBenchmark.database_name);
+        try {
+            // Schema and data can't be changed in the same transaction
+            try (Transaction tx = graphdb.beginTx()) {
+                tx.execute("CREATE INDEX ON :User(id)").close();
+                tx.commit();
+            }
+            try (Transaction tx = graphdb.beginTx()) {
+                tx.schema().awaitIndexesOnline(10, TimeUnit.MINUTES);
+            }
+
+            for(int from = 0; from < users; from += WRITES_PER_TX) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("from", from);
+                params.put("to", Math.min(users, from + WRITES_PER_TX) - 1);
+                try (Transaction tx = graphdb.beginTx()) {
+                    tx.execute(USER_BATCH, params).close();
+                    tx.commit();
+                }
+            }
+            System.out.println("Created " + users + " users");
+
+            long relationships = (long) users * follows;
+            List<List<Integer>> pairs = new ArrayList<>();
+            for(long r = 0; r < relationships; r++) {
+                pairs.add(List.of(random.nextInt(users), random.nextInt(users)));
+                if(pairs.size() == WRITES_PER_TX || r == relationships - 1) {
+                    try (Transaction tx = graphdb.beginTx()) {
+                        tx.execute(FOLLOWS_BATCH, Map.of("pairs", pairs)).close();
+                        tx.commit();
+                    }
+                    pairs = new ArrayList<>();
+                }
+            }
+            System.out.println("Created " + relationships + " follows");
+        }
+        finally {
+            dbms.shutdown();
+        }
+    }
+
+    // Writes operations/Users<operations>Cypher.txt and intervals/intervals-<rate>-<operations>.txt
+    public static void generateTrace(File trace_dir, int users, int operations, double rate, Random random) throws IOException {
+        File operation_dir = new File(trace_dir, "operations");
+        File interval_dir = new File(trace_dir, "intervals");
+        if((!operation_dir.isDirectory() && !operation_dir.mkdirs()) || (!interval_dir.isDirectory() && !interval_dir.mkdirs())) {
+            throw new IOException("Could not create " + operation_dir + " and " + interval_dir);
+        }
+
+        File operation_file = new File(operation_dir, "Users" + operations + "Cypher.txt");
+        File interval_file = new File(interval_dir, "intervals-" + formatRate(rate) + "-" + operations + ".txt");
+        int total_weight = 0;
+        for(int weight : WEIGHTS) {
+            total_weight += weight;
+        }
+
+        try (PrintWriter operation_out = new PrintWriter(operation_file);
+             PrintWriter interval_out = new PrintWriter(interval_file)) {
+            double arrival = 0;
+            for(int i = 0; i < operations; i++) {
+                operation_out.println(operation(random.nextInt(total_weight), users, random));
+                interval_out.println((long) arrival);
+                // Exponential gaps between arrivals, mean 1000 / rate ms
+                arrival += -Math.log(1 - random.nextDouble()) * 1000 / rate;
+            }
+        }
+        System.out.println("Wrote " + operation_file + " and " + interval_file);
+    }
+
+    private static String operation(int pick, int users, Random random) {
+        int kind = 0;
+        while(pick >= WEIGHTS[kind]) {
+            pick -= WEIGHTS[kind];
+            kind++;
+        }
+        int age = 18 + random.nextInt(60);
+        switch(kind) {
+            case 0:
+            case 3:
+                return String.format(OPERATIONS[kind], random.nextInt(users));
+            case 1:
+                return String.format(OPERATIONS[kind], age, age + 1 + random.nextInt(10));
+            default:
+                return String.format(OPERATIONS[kind], age);
+        }
+    }
+
+    private static String formatRate(double rate) {
+        return rate == Math.rint(rate) ? Long.toString((long) rate) : Double.toString(rate);
+    }
+}
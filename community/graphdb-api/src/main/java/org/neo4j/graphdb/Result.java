@@ -22,6 +22,7 @@ package org.neo4j.graphdb;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.neo4j.annotations.api.PublicApi;
 
@@ -273,6 +274,10 @@ public interface Result extends ResourceIterator<Map<String,Object>>
     default String lazyResultAsString() {
         throw new UnsupportedOperationException("Error: lazyResultAsString not implemented");
     }
+    /* Take one step, passing the row it produces to visitor right away. True once the result is complete, or the visitor returned false */
+    default <VisitationException extends Exception> boolean lazyAccept(ResultVisitor<VisitationException> visitor) throws VisitationException {
+        throw new UnsupportedOperationException("Error: lazyAccept not implemented");
+    }
     default void initializeForBatching() {
         throw new UnsupportedOperationException("Error: initializeForBatching not implemented");
     }
@@ -282,4 +287,56 @@ public interface Result extends ResourceIterator<Map<String,Object>>
     default void setUseCached(boolean useCached) {
         throw new UnsupportedOperationException("Error: setUseCached not implemented");
     }
+
+    /* Scan key shared by every result whose plan is driven by an all-nodes scan */
+    String ALL_NODES_SCAN_KEY = "AllNodesScan";
+
+    /* Results with equal keys are driven by the same scan and can share it, null if the scan can't be shared */
+    default String lazyScanKey() {
+        throw new UnsupportedOperationException("Error: lazyScanKey not implemented");
+    }
+    /* Estimated number of rows produced by the scan driving this result */
+    default long lazyScanCost() {
+        throw new UnsupportedOperationException("Error: lazyScanCost not implemented");
+    }
+    /* Properties of the scanned nodes this result filters on, results with equal keys share the most when batched */
+    default String lazyFilterKey() {
+        throw new UnsupportedOperationException("Error: lazyFilterKey not implemented");
+    }
+    /* Whether running the same query again with the same parameters gives the same rows, false if its plan calls e.g. rand() */
+    default boolean lazyDeterministic() {
+        throw new UnsupportedOperationException("Error: lazyDeterministic not implemented");
+    }
+    /* Whether the writes of either result could change what the other reads, so they can't be batched together */
+    default boolean lazyConflictsWith(Result other) {
+        throw new UnsupportedOperationException("Error: lazyConflictsWith not implemented");
+    }
+    /* Whether this result can be driven by an all-nodes scan shared with results on other scans */
+    default boolean lazyCanShareAllNodesScan() {
+        throw new UnsupportedOperationException("Error: lazyCanShareAllNodesScan not implemented");
+    }
+    /* Drive this result by an all-nodes scan instead, filtering out nodes that don't match its own scan */
+    default void widenToAllNodesScan() {
+        throw new UnsupportedOperationException("Error: widenToAllNodesScan not implemented");
+    }
+    /* Set up the scan this result will drive for the whole batch, e.g. one seek covering the keys of every member, read ahead by up to partitions workers run on workers */
+    default void prepareSharedScan(List<Result> batch, int partitions, Executor workers) {
+        throw new UnsupportedOperationException("Error: prepareSharedScan not implemented");
+    }
+    /* Evaluate the filters right above the shared scan of the batch together, reading each property once per node */
+    default void prepareSharedFilters(List<Result> batch) {
+        throw new UnsupportedOperationException("Error: prepareSharedFilters not implemented");
+    }
+    /* Let the batch read each node property once per shared row and each relationship traversal once, called once the shared scan is set up */
+    default void prepareSharedCaches(List<Result> batch) {
+        throw new UnsupportedOperationException("Error: prepareSharedCaches not implemented");
+    }
+    /* Join the scan leader is already driving at the row it is on, the scan wraps around for the rows this result missed. False if it can't */
+    default boolean joinSharedScan(Result leader) {
+        throw new UnsupportedOperationException("Error: joinSharedScan not implemented");
+    }
+    /* The rows this result would have if its input ended now, e.g. a running count or the current top rows, null if there are none yet */
+    default List<Map<String,Object>> lazyPartialResult() {
+        throw new UnsupportedOperationException("Error: lazyPartialResult not implemented");
+    }
 }
@@ -19,7 +19,11 @@
  */
 package org.neo4j.graphdb;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 import org.neo4j.annotations.api.PublicApi;
 import org.neo4j.graphdb.schema.Schema;
@@ -483,6 +487,27 @@ public interface Transaction extends AutoCloseable
     default long lazyExecute(String query) {
         throw new UnsupportedOperationException("Error: lazyExecute not implemented");
     }
+    /* Lazily execute a parameterized query, operations on the same template share one plan and are batched together */
+    default long lazyExecute(String template, Map<String,Object> params) {
+        throw new UnsupportedOperationException("Error: lazyExecute not implemented");
+    }
+    /* Lazily execute a query, passing each row to visitor on the propagating thread as soon as it is produced */
+    default long lazyExecute(String template, Map<String,Object> params, Result.ResultVisitor<? extends Exception> visitor) {
+        throw new UnsupportedOperationException("Error: lazyExecute not implemented");
+    }
+    /* As above, columns is given the columns of the query before any row reaches visitor */
+    default long lazyExecute(String template, Map<String,Object> params, Result.ResultVisitor<? extends Exception> visitor,
+                             Consumer<List<String>> columns) {
+        throw new UnsupportedOperationException("Error: lazyExecute not implemented");
+    }
+    /* Lazily execute a query that should complete within within_ms, ahead of operations without a deadline */
+    default long lazyExecuteWithin(String template, Map<String,Object> params, long within_ms) {
+        throw new UnsupportedOperationException("Error: lazyExecuteWithin not implemented");
+    }
+    /* Lazily execute a query, completed with its rows once it has completed */
+    default CompletableFuture<List<Map<String,Object>>> lazyExecuteAsync(String template, Map<String,Object> params) {
+        throw new UnsupportedOperationException("Error: lazyExecuteAsync not implemented");
+    }
 
     default boolean propagateFirst() {
         throw new UnsupportedOperationException("Error: propagateFirst not implemented");
@@ -502,6 +527,10 @@ public interface Transaction extends AutoCloseable
     default void stopPropagation() {
         throw new UnsupportedOperationException("Error: stopPropagation not implemented");
     }
+    /* True while propagation workers of this transaction propagate its batches */
+    default boolean isPropagating() {
+        throw new UnsupportedOperationException("Error: isPropagating not implemented");
+    }
 
     default void batchDelayed() {
         throw new UnsupportedOperationException("Error: stopPropagation not implemented");
@@ -512,10 +541,57 @@ public interface Transaction extends AutoCloseable
     default void shutdownThreadPool() {
         throw new UnsupportedOperationException("Error: shutdownThreadPool not implemented");
     }
+    /* Render and print the results of lazyExecute calls without a visitor, they're dropped otherwise */
+    default void setPrintResults(boolean print_results) {
+        throw new UnsupportedOperationException("Error: setPrintResults not implemented");
+    }
     default void setNumThreads(int num_threads) {
             throw new UnsupportedOperationException("Error: setNumThreads not implemented");
     }
+    /* Read again for every stride propagated, e.g. bound to a tuning knob */
+    default void setStrideSize(IntSupplier stride_size) {
+        throw new UnsupportedOperationException("Error: setStrideSize not implemented");
+    }
+    /* Read again for every batch formed */
+    default void setMaxBatchSize(IntSupplier max_batch_size) {
+        throw new UnsupportedOperationException("Error: setMaxBatchSize not implemented");
+    }
+    /* Read again for every batch formed, 1 reads each shared scan on the propagating thread alone */
+    default void setScanPartitions(IntSupplier scan_partitions) {
+        throw new UnsupportedOperationException("Error: setScanPartitions not implemented");
+    }
     default long getNumCompletedInSeconds( long seconds, long time_from ) {
         throw new UnsupportedOperationException("Error: getNumCompletedInSeconds not implemented");
     }
+    /* Upper bound of the latency in ms under which the given fraction of the finished lazy operations completed */
+    default long lazyLatencyPercentile(double fraction) {
+        throw new UnsupportedOperationException("Error: lazyLatencyPercentile not implemented");
+    }
+    /* Form batches and propagate a stride on the calling thread, for callers without propagation workers */
+    default boolean lazyPropagate() {
+        throw new UnsupportedOperationException("Error: lazyPropagate not implemented");
+    }
+    /* Cancel a lazy operation, its result is let go of at the next stride boundary of its batch */
+    default boolean lazyCancel(long operationNum) {
+        throw new UnsupportedOperationException("Error: lazyCancel not implemented");
+    }
+    /* Cancel a lazy operation unless it completes within timeout_ms */
+    default boolean lazyTimeout(long operationNum, long timeout_ms) {
+        throw new UnsupportedOperationException("Error: lazyTimeout not implemented");
+    }
+    /* True once a lazy operation has completed, failed or was cancelled */
+    default boolean lazyCompleted(long operationNum) {
+        throw new UnsupportedOperationException("Error: lazyCompleted not implemented");
+    }
+    /* Completed once a lazy operation has, exceptionally if it failed and cancelled if it was cancelled */
+    default CompletableFuture<?> lazyCompletion(long operationNum) {
+        throw new UnsupportedOperationException("Error: lazyCompletion not implemented");
+    }
+    /* Why a lazy operation failed, null if it completed or was cancelled */
+    default Throwable lazyFailure(long operationNum) {
+        throw new UnsupportedOperationException("Error: lazyFailure not implemented");
+    }
+    default List<Map<String,Object>> lazyPartialResult(long operationNum) {
+        throw new UnsupportedOperationException("Error: lazyPartialResult not implemented");
+    }
 }
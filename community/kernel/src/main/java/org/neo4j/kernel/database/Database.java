@@ -83,6 +83,7 @@ import org.neo4j.kernel.impl.api.state.ConstraintIndexCreator;
 import org.neo4j.kernel.impl.api.transaction.monitor.KernelTransactionMonitor;
 import org.neo4j.kernel.impl.api.transaction.monitor.KernelTransactionMonitorScheduler;
 import org.neo4j.kernel.impl.constraints.ConstraintSemantics;
+import org.neo4j.kernel.impl.coreapi.LazySharedScans;
 import org.neo4j.kernel.impl.factory.AccessCapability;
 import org.neo4j.kernel.impl.factory.AccessCapabilityFactory;
 import org.neo4j.kernel.impl.factory.DatabaseInfo;
@@ -240,6 +241,8 @@ public class Database extends LifecycleAdapter
     private final FileLockerService fileLockerService;
     private final KernelTransactionFactory kernelTransactionFactory;
     private final DatabaseStartupController startupController;
+    // TAG: Lazy Implementation
+    private final LazySharedScans lazySharedScans = new LazySharedScans();
 
     public Database( DatabaseCreationContext context )
     {
@@ -873,6 +876,11 @@ public class Database extends LifecycleAdapter
         return tokenHolders;
     }
 
+    public LazySharedScans getLazySharedScans()
+    {
+        return lazySharedScans;
+    }
+
     public DatabaseAvailabilityGuard getDatabaseAvailabilityGuard()
     {
         return databaseAvailabilityGuard;
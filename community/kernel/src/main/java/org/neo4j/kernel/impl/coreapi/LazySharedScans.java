@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// TAG: Lazy Implementation
+/**
+ * Running label and all-nodes scans of lazy batches, shared by every transaction on a database. Read-only
+ * operations of a transaction without changes of its own may attach to a scan another such transaction is
+ * running, so concurrent readers of the same label read it once.
+ */
+public class LazySharedScans
+{
+    /**
+     * A running scan operations may attach to.
+     */
+    public interface SharedScan
+    {
+        String scanKey();
+    }
+
+    private final ConcurrentHashMap<String,Set<SharedScan>> running = new ConcurrentHashMap<>();
+
+    public void register( SharedScan scan )
+    {
+        running.computeIfAbsent( scan.scanKey(), key -> ConcurrentHashMap.newKeySet() ).add( scan );
+    }
+
+    public void unregister( SharedScan scan )
+    {
+        running.computeIfPresent( scan.scanKey(), ( key, scans ) ->
+        {
+            scans.remove( scan );
+            return scans.isEmpty() ? null : scans;
+        } );
+    }
+
+    public Collection<SharedScan> running( String scanKey )
+    {
+        Set<SharedScan> scans = running.get( scanKey );
+        return scans == null ? Collections.emptySet() : scans;
+    }
+}
@@ -20,12 +20,25 @@
 package org.neo4j.kernel.impl.coreapi;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 import org.neo4j.common.EntityType;
 import org.neo4j.exceptions.KernelException;
@@ -38,6 +51,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.NotInTransactionException;
 import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.QueryExecutionType;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.ResourceIterable;
@@ -80,6 +94,7 @@ import org.neo4j.kernel.api.SilentTokenNameLookup;
 import org.neo4j.kernel.api.exceptions.Status;
 import org.neo4j.kernel.api.exceptions.Status.Classification;
 import org.neo4j.kernel.api.exceptions.Status.Code;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
 import org.neo4j.kernel.availability.DatabaseAvailabilityGuard;
 import org.neo4j.kernel.availability.UnavailableException;
 import org.neo4j.kernel.impl.api.TokenAccess;
@@ -97,6 +112,7 @@ import org.neo4j.kernel.impl.traversal.MonoDirectionalTraversalDescription;
 import org.neo4j.kernel.impl.util.ValueUtils;
 import org.neo4j.token.TokenHolders;
 import org.neo4j.token.api.TokenNotFoundException;
+import org.neo4j.util.VisibleForTesting;
 import org.neo4j.values.storable.Values;
 import org.neo4j.values.virtual.MapValue;
 
@@ -131,6 +147,14 @@ public class TransactionImpl implements InternalTransaction
         setTransaction( transaction );
     }
 
+    public TransactionImpl( TokenHolders tokenHolders, TransactionalContextFactory contextFactory,
+            DatabaseAvailabilityGuard availabilityGuard, QueryExecutionEngine executionEngine,
+            KernelTransaction transaction, LazySharedScans sharedScans )
+    {
+        this( tokenHolders, contextFactory, availabilityGuard, executionEngine, transaction );
+        this.shared_scans = sharedScans;
+    }
+
     @Override
     public void commit()
     {
@@ -488,6 +512,8 @@ public class TransactionImpl implements InternalTransaction
 
     private void safeTerminalOperation( TransactionalOperation operation )
     {
+        unshareScans();
+        shutdownScanPool();
         try
         {
             operation.perform( transaction );
@@ -887,8 +913,73 @@ public class TransactionImpl implements InternalTransaction
     // TAG: Lazy Implementation
     /* Jeff's Lazy Additions */
 
-    final static int MAX_BATCH_SIZE = 10;
-    final static int STRIDE_SIZE = 42000;
+    final static int DEFAULT_MAX_BATCH_SIZE = 10;
+    final static int DEFAULT_STRIDE_SIZE = 42000;
+    final static int DEFAULT_SCAN_PARTITIONS = 1;
+    final static long NO_DEADLINE = Long.MAX_VALUE;
+
+    // Read again for every batch formed and every stride propagated, so they can be tuned while propagating
+    private volatile IntSupplier max_batch_size = () -> DEFAULT_MAX_BATCH_SIZE;
+    private volatile IntSupplier stride_size = () -> DEFAULT_STRIDE_SIZE;
+    private volatile IntSupplier scan_partitions = () -> DEFAULT_SCAN_PARTITIONS;
+    public void setMaxBatchSize(IntSupplier max_batch_size) {
+        this.max_batch_size = max_batch_size;
+    }
+    public void setStrideSize(IntSupplier stride_size) {
+        this.stride_size = stride_size;
+    }
+    public void setScanPartitions(IntSupplier scan_partitions) {
+        this.scan_partitions = scan_partitions;
+    }
+    int maxBatchSize() {
+        return Math.max(1, this.max_batch_size.getAsInt());
+    }
+    int strideSize() {
+        return Math.max(1, this.stride_size.getAsInt());
+    }
+    int scanPartitions() {
+        return Math.max(1, this.scan_partitions.getAsInt());
+    }
+
+    /*
+       Workers reading partitioned scans ahead, bounded and shut down with the transaction. A batch reserves its
+       workers before its scan is split and gives them back once it is removed, so a split scan never waits for
+       workers held by the scans of other batches, and a batch that gets none scans on its own.
+    */
+    final static int MAX_SCAN_WORKERS = 2 * Runtime.getRuntime().availableProcessors();
+    private final Semaphore scan_worker_permits = new Semaphore(MAX_SCAN_WORKERS);
+    private ThreadPoolExecutor scan_pool;
+
+    // Workers for the scan of a new batch, called holding delayed_lock
+    private int reserveScanWorkers(ArrayList<DelayedOperation> batch) {
+        int partitions = Math.min(this.scanPartitions(), MAX_SCAN_WORKERS);
+        // The workers read on threads of their own, and the state of a transaction with changes isn't thread safe
+        if(partitions < 2 || !this.readsCommittedOnly(batch) || !this.scan_worker_permits.tryAcquire(partitions)) {
+            return 1;
+        }
+        if(this.scan_pool == null || this.scan_pool.isShutdown()) {
+            this.scan_pool = new ThreadPoolExecutor(MAX_SCAN_WORKERS, MAX_SCAN_WORKERS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            this.scan_pool.allowCoreThreadTimeOut(true);
+        }
+        return partitions;
+    }
+
+    private void shutdownScanPool() {
+        this.delayed_lock.lock();
+        try {
+            if(this.scan_pool != null) {
+                this.scan_pool.shutdown();
+            }
+        }
+        finally {
+            this.delayed_lock.unlock();
+        }
+    }
+    // Plain lazyExecute results are only rendered and printed when asked for, otherwise their rows are dropped
+    private volatile boolean print_results = false;
+    public void setPrintResults(boolean print_results) {
+        this.print_results = print_results;
+    }
     static int NUM_THREADS = 4;
     public void setNumThreads(int num_threads) {
         NUM_THREADS = num_threads;
@@ -897,63 +988,320 @@ public class TransactionImpl implements InternalTransaction
     ExecutorService thread_pool = Executors.newFixedThreadPool(NUM_THREADS);
 
     private class PropagateRunner implements Runnable{
-        int index;
+        long index;
         BatchedOperation batch;
-        PropagateRunner(int index) {
+        PropagateRunner(long index) {
             this.index = index;
-            this.batch = batched.data[index];
+            this.batch = batched.get(index);
         }
         public void run() {
             if(this.batch.lock.tryLock()) {
-                this.batch.propagate();
-                if(this.batch.batch.size() == 0) {
-                    batched.remove(this.index);
+                try {
+                    this.batch.propagate(strideSize());
+                }
+                catch(Throwable t) {
+                    this.batch.fail(t);
+                }
+                finally {
+                    if(this.batch.batch.size() == 0) {
+                        removeBatch(this.batch);
+                    }
+                    this.batch.lock.unlock();
                 }
-                this.batch.lock.unlock();
             }
         }
     }
 
-    private static boolean PROPAGATING = false;
+    // The scheduler of the workers of this transaction, null while it isn't propagating with workers
+    private volatile PropagationScheduler scheduler;
     public void startPropagation() {
-        PROPAGATING = true;
-        System.out.println("Beginning propagation with " + NUM_THREADS + " threads");
+        if(this.scheduler != null) {
+            return;
+        }
+
+        // A pool shut down by an earlier stopPropagation can't take new workers
+        if(thread_pool.isShutdown()) {
+            thread_pool = Executors.newFixedThreadPool(NUM_THREADS);
+        }
+
+        // setNumThreads may have been called after the pool was created
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) thread_pool;
+        if(NUM_THREADS > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(NUM_THREADS);
+            pool.setCorePoolSize(NUM_THREADS);
+        }
+        else {
+            pool.setCorePoolSize(NUM_THREADS);
+            pool.setMaximumPoolSize(NUM_THREADS);
+        }
+
+        PropagationScheduler s = new PropagationScheduler(NUM_THREADS, this::strideSize, this::removeBatch);
+        this.delayed_lock.lock();
+        try {
+            // Batches are submitted holding delayed_lock, so none is added between these and the ones batchDelayed submits
+            for(long i = batched.getOldest(); i < batched.getNewest(); i++) {
+                BatchedOperation batch = batched.get(i);
+                if(batch != null) {
+                    s.submit(batch);
+                }
+            }
+            this.scheduler = s;
+        }
+        finally {
+            this.delayed_lock.unlock();
+        }
         for(int i = 0; i < NUM_THREADS; i++) {
-            thread_pool.execute(new ConstantPropagationRunner());
+            thread_pool.execute(new PropagationWorker(s, i));
         }
     }
+    // Only stops the workers of this transaction, lazyPropagate propagates on the calling thread again afterwards
     public void stopPropagation() {
-        PROPAGATING = false;
-        System.out.println("Shutting down thread pool");
+        PropagationScheduler s;
+        this.delayed_lock.lock();
+        try {
+            s = this.scheduler;
+            this.scheduler = null;
+        }
+        finally {
+            this.delayed_lock.unlock();
+        }
+        if(s != null) {
+            s.stop();
+            // Nobody steps the operations of other transactions attached to its scans anymore
+            if(this.shared_scans != null) {
+                this.unshareOwnScans("its transaction stopped propagating");
+            }
+        }
         thread_pool.shutdown();
     }
+    // True while workers of this transaction propagate its batches, lazyPropagate only forms batches then
+    public boolean isPropagating() {
+        return this.scheduler != null;
+    }
 
-    private class ConstantPropagationRunner implements Runnable {
+    private static class PropagationWorker implements Runnable {
+        PropagationScheduler scheduler;
+        int id;
+        PropagationWorker(PropagationScheduler scheduler, int id) {
+            this.scheduler = scheduler;
+            this.id = id;
+        }
         public void run() {
-            while(PROPAGATING) {
-                int i = batched.oldest;
-                while ( i < batched.newest ) {
-                    BatchedOperation prev;
-                    if(i <= 0) {
-                        prev = null;
-                    } else {
-                        prev = batched.data[i-1];
-                    }
-
-                    BatchedOperation current = batched.data[i];
-                    if(current != null && current.lock.tryLock() ) {
-                        // Check can propagate
-                        if(current.batch.size() > 0 && (prev == null || prev.num_times_propagated >= current.num_times_propagated + STRIDE_SIZE)) {
-                            // Do propagation
-                            if (current.propagate()) {
-                                batched.remove(i);
-                            }
-                            // reset to beginning (favoring oldest)
-                            i = batched.oldest-1;
+            while(this.scheduler.running()) {
+                BatchedOperation current = this.scheduler.take(this.id);
+                if(current == null) {
+                    continue;
+                }
+                try {
+                    current.lock.lock();
+                    try {
+                        if(current.batch.size() > 0) {
+                            current.propagate(this.scheduler.strideSize());
                         }
+                    }
+                    catch(Throwable t) {
+                        // Fails the operations of the batch instead of the worker, the batch then finishes
+                        current.fail(t);
+                    }
+                    finally {
                         current.lock.unlock();
                     }
-                    i++;
+                }
+                finally {
+                    this.scheduler.strideDone(current, this.id);
+                }
+            }
+        }
+    }
+
+    /*
+       Hands out one stride of a batch at a time. Every worker has its own deque of ready batches, takes the oldest
+       of its own and steals the newest of another worker's when it has none, and parks while nothing is ready.
+       A batch stays behind its predecessor by at least a stride: it isn't ready until its predecessor has
+       propagated a stride more times or finished, and is handed back out when its predecessor gets there.
+       Batches with a deadline skip the deques, they wait in one queue ordered by earliest deadline that every
+       worker takes from first. A batch waiting on its predecessor lends it its deadline, so the predecessor
+       isn't left behind background batches while holding up an urgent one. Runs until stop is called, every
+       transaction propagating with workers has a scheduler of its own.
+    */
+    @VisibleForTesting
+    static class PropagationScheduler {
+        ConcurrentLinkedDeque<BatchedOperation>[] deques;
+        // Ordered by the deadline a batch had when it was pushed, guarded by itself
+        PriorityQueue<BatchedOperation> urgent = new PriorityQueue<>(Comparator.comparingLong((BatchedOperation b) -> b.scheduled_deadline));
+        AtomicInteger ready = new AtomicInteger();
+        AtomicInteger idle = new AtomicInteger();
+        ReentrantLock idle_lock = new ReentrantLock();
+        Condition work_available = idle_lock.newCondition();
+
+        // Guards predecessor, successor, waiting and finished of every batch
+        Object dependencies = new Object();
+        BatchedOperation last;
+        int next_deque = 0;
+
+        volatile boolean running = true;
+        IntSupplier stride_size;
+        // Called with every batch that finished, holding dependencies
+        Consumer<BatchedOperation> on_finished;
+
+        @SuppressWarnings("unchecked")
+        PropagationScheduler(int num_workers, IntSupplier stride_size, Consumer<BatchedOperation> on_finished) {
+            this.stride_size = stride_size;
+            this.on_finished = on_finished;
+            this.deques = new ConcurrentLinkedDeque[num_workers];
+            for(int i = 0; i < num_workers; i++) {
+                this.deques[i] = new ConcurrentLinkedDeque<>();
+            }
+        }
+
+        // Batches must be submitted in the order they were created
+        void submit(BatchedOperation batch) {
+            synchronized(this.dependencies) {
+                if(this.last != null && !this.last.finished) {
+                    batch.predecessor = this.last;
+                    this.last.successor = batch;
+                }
+                this.last = batch;
+                this.schedule(batch, this.next_deque);
+                this.next_deque = (this.next_deque + 1) % this.deques.length;
+            }
+        }
+
+        // Parks while nothing is ready, null once stopped
+        BatchedOperation take(int id) {
+            while(this.running) {
+                BatchedOperation batch = this.poll(id);
+                if(batch != null) {
+                    return batch;
+                }
+
+                this.idle_lock.lock();
+                this.idle.incrementAndGet();
+                try {
+                    while(this.ready.get() == 0 && this.running) {
+                        this.work_available.await();
+                    }
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                finally {
+                    this.idle.decrementAndGet();
+                    this.idle_lock.unlock();
+                }
+            }
+            return null;
+        }
+
+        // The next ready batch for worker id, urgent ones first, then its own and then one stolen, null if none is ready
+        BatchedOperation poll(int id) {
+            BatchedOperation batch;
+            synchronized(this.urgent) {
+                batch = this.urgent.poll();
+            }
+            if(batch == null) {
+                batch = this.deques[id].pollFirst();
+            }
+            for(int k = 1; batch == null && k < this.deques.length; k++) {
+                batch = this.deques[(id + k) % this.deques.length].pollLast();
+            }
+            if(batch != null) {
+                this.ready.decrementAndGet();
+            }
+            return batch;
+        }
+
+        void strideDone(BatchedOperation batch, int id) {
+            synchronized(this.dependencies) {
+                if(batch.batch.size() == 0) {
+                    batch.finished = true;
+                    this.on_finished.accept(batch);
+                    if(this.last == batch) {
+                        this.last = null;
+                    }
+                    if(batch.successor != null) {
+                        batch.successor.predecessor = null;
+                    }
+                }
+                else {
+                    this.schedule(batch, id);
+                }
+
+                // This stride may be what its successor was waiting for
+                BatchedOperation successor = batch.successor;
+                if(successor != null && successor.waiting && !blocked(successor)) {
+                    successor.waiting = false;
+                    this.push(successor, id);
+                }
+            }
+        }
+
+        int strideSize() {
+            return Math.max(1, this.stride_size.getAsInt());
+        }
+
+        boolean running() {
+            return this.running;
+        }
+
+        // Workers finish the stride they're in and return, batches left are propagated by whoever propagates next
+        void stop() {
+            this.running = false;
+            this.wakeAll();
+        }
+
+        void wakeAll() {
+            this.idle_lock.lock();
+            try {
+                this.work_available.signalAll();
+            }
+            finally {
+                this.idle_lock.unlock();
+            }
+        }
+
+        private void schedule(BatchedOperation batch, int id) {
+            if(blocked(batch)) {
+                batch.waiting = true;
+            }
+            else {
+                this.push(batch, id);
+            }
+        }
+
+        private boolean blocked(BatchedOperation batch) {
+            return batch.predecessor != null &&
+                   batch.predecessor.num_times_propagated < batch.num_times_propagated + strideSize();
+        }
+
+        // Its own deadline or the one of the batches waiting on it, called holding dependencies
+        private long deadlineOf(BatchedOperation batch) {
+            long deadline = batch.deadline;
+            for(BatchedOperation s = batch.successor; s != null && s.waiting; s = s.successor) {
+                deadline = Math.min(deadline, s.deadline);
+            }
+            return deadline;
+        }
+
+        private void push(BatchedOperation batch, int id) {
+            batch.scheduled_deadline = this.deadlineOf(batch);
+            if(batch.scheduled_deadline != NO_DEADLINE) {
+                synchronized(this.urgent) {
+                    this.urgent.add(batch);
+                }
+            }
+            else {
+                this.deques[id].addLast(batch);
+            }
+            this.ready.incrementAndGet();
+            if(this.idle.get() > 0) {
+                this.idle_lock.lock();
+                try {
+                    this.work_available.signal();
+                }
+                finally {
+                    this.idle_lock.unlock();
                 }
             }
         }
@@ -966,29 +1314,204 @@ public class TransactionImpl implements InternalTransaction
 
 
 
-    private static class DelayedOperation {
-        private static long _next_operation_num = 0;
+    @VisibleForTesting
+    static class DelayedOperation {
         protected long operation_num;
         String query;
+        Map<String, Object> params;
         Result result;
-
-        public DelayedOperation(String query, Result result) {
-            this.operation_num = _next_operation_num++;
+        String scan_key;
+        long scan_cost;
+        boolean shares_all_nodes;
+        String filter_key;
+        long arrival_time;
+        boolean read_only;
+        boolean deterministic;
+
+        // Time in ms by which the operation should have completed, NO_DEADLINE for background operations
+        long deadline = NO_DEADLINE;
+
+        // Registry of the transaction the operation belongs to, and if it is attached to a scan of another
+        // transaction, the transaction it belongs to and the batch it is attached to
+        OperationRegistry operations;
+        TransactionImpl attached_from;
+        BatchedOperation attached_to;
+
+        // Operations that were exact duplicates of this one, answered by its result, guarded by delayed_lock
+        ArrayList<Long> duplicates = new ArrayList<>();
+
+        // Where the rows go. Without a visitor the rows are dropped, or the whole result is rendered and printed once
+        // complete if print_result, with one each row is passed on as soon as it is produced. completion is completed
+        // once the operation has, with the rows if they're collected, exceptionally if it failed, and cancelled if it
+        // was cancelled
+        Result.ResultVisitor<? extends Exception> visitor;
+        CompletableFuture<List<Map<String, Object>>> completion;
+        List<Map<String, Object>> rows;
+        boolean print_result;
+
+        public DelayedOperation(long operation_num, String query, Map<String, Object> params, Result result) {
+            this(operation_num, query, params, result, null);
+        }
+
+        public DelayedOperation(long operation_num, String query, Map<String, Object> params, Result result, Result.ResultVisitor<? extends Exception> visitor) {
+            this.operation_num = operation_num;
             this.query = query;
+            this.params = params;
             this.result = result;
+            this.visitor = visitor;
+            this.completion = new CompletableFuture<>();
+            this.scan_key = result.lazyScanKey();
+            this.scan_cost = result.lazyScanCost();
+            this.shares_all_nodes = this.scan_key != null && result.lazyCanShareAllNodesScan();
+            this.filter_key = this.scan_key == null ? null : result.lazyFilterKey();
+            this.arrival_time = System.currentTimeMillis();
+            this.read_only = result.getQueryExecutionType().queryType() == QueryExecutionType.QueryType.READ_ONLY;
+            this.deterministic = this.read_only && result.lazyDeterministic();
+        }
+
+        long addDuplicate(long operation_num) {
+            this.duplicates.add(operation_num);
+            return operation_num;
+        }
+
+        boolean answers(long operation_num) {
+            return this.operation_num == operation_num || this.duplicates.contains(operation_num);
+        }
+
+        String description() {
+            return this.params.isEmpty() ? this.query : this.query + " " + this.params;
+        }
+
+        // Collects the rows, to complete completion with
+        void collectRows() {
+            List<String> columns = this.result.columns();
+            this.rows = new ArrayList<>();
+            this.visitor = row -> {
+                HashMap<String, Object> record = new HashMap<>();
+                for(String column : columns) {
+                    record.put(column, row.get(column));
+                }
+                this.rows.add(record);
+                return true;
+            };
+        }
+
+        // One step of this operation, true once it has completed. A failure of the query or of the visitor is thrown
+        boolean step() throws Exception {
+            if(this.visitor == null && !this.print_result) {
+                this.visitor = row -> true;
+            }
+            if(this.visitor == null) {
+                String rendered = this.result.lazyResultAsString();
+                if(rendered == null) {
+                    return false;
+                }
+                System.out.println(this.description());
+                System.out.println(rendered);
+                this.completion.complete(null);
+                return true;
+            }
+            if(!this.result.lazyAccept(this.visitor)) {
+                return false;
+            }
+            this.completion.complete(this.rows);
+            return true;
+        }
+
+        // True once every id this operation answers was cancelled or timed out, so nobody waits for its rows anymore
+        boolean abandoned(long now) {
+            boolean abandoned = this.operations.abandoned(this.operation_num, now);
+            for(long duplicate : this.duplicates) {
+                abandoned &= this.operations.abandoned(duplicate, now);
+            }
+            return abandoned;
+        }
+
+        // Ends every id of the operation with failure, kept by the registry for lazyFailure
+        void fail(Throwable failure) {
+            this.operations.fail(this.operation_num, failure);
+            for(long duplicate : this.duplicates) {
+                this.operations.fail(duplicate, failure);
+            }
+            this.completion.completeExceptionally(failure);
+            this.release();
+        }
+
+        // Lets go of the result of an abandoned operation, its cursors and its share of a scan
+        void release() {
+            try {
+                this.result.close();
+            }
+            catch(RuntimeException e) {
+                // A result that failed may fail to close as well, it is let go of all the same
+            }
+            this.completion.cancel(false);
+            this.leaveAttached();
+        }
+
+        // Ends every id of the operation without a result, and lets go of it
+        void cancel() {
+            this.operations.cancel(this.operation_num);
+            for(long duplicate : this.duplicates) {
+                this.operations.cancel(duplicate);
+            }
+            this.release();
+        }
+
+        // No longer counts as remaining in its own transaction once it has left the batch it was attached to
+        void leaveAttached() {
+            if(this.attached_from != null) {
+                this.attached_from.attached_elsewhere.remove(this);
+            }
+        }
+
+        // Operations that can't share their scan get a key of their own
+        String batchKey() {
+            return this.scan_key == null ? "Operation(" + this.operation_num + ")" : this.scan_key;
         }
     }
 
-    private static class BatchedOperation {
-        public int num_times_propagated = 0;
+    @VisibleForTesting
+    static class BatchedOperation implements LazySharedScans.SharedScan {
+        public volatile int num_times_propagated = 0;
         public ReentrantLock lock;
         public ArrayList<DelayedOperation> batch;
-        public BatchedOperation(ArrayList<DelayedOperation> batch) {
+        long index;
+        TransactionImpl owner;
+        String scan_key;
+        boolean writes;
+
+        // Workers reserved for reading its scan ahead, 1 if the scan isn't split
+        int scan_workers = 1;
+
+        // Registered with the owner's shared_scans, so operations of other transactions may attach, changed holding lock
+        boolean shared;
+
+        // Earliest deadline of the operations in the batch, changed holding lock
+        volatile long deadline = NO_DEADLINE;
+
+        // Scheduling state, see PropagationScheduler
+        long scheduled_deadline;
+        BatchedOperation predecessor;
+        BatchedOperation successor;
+        boolean waiting;
+        boolean finished;
+        public BatchedOperation(ArrayList<DelayedOperation> batch, TransactionImpl owner) {
             this.batch = batch;
+            this.owner = owner;
+            this.scan_key = batch.get(0).scan_key;
+            for(DelayedOperation op : batch) {
+                this.writes |= !op.read_only;
+            }
+            this.updateDeadline();
             this.lock = new ReentrantLock();
         }
 
-        public boolean propagate() {
+        public String scanKey() {
+            return this.scan_key;
+        }
+
+        public boolean propagate(int stride_size) {
             /*
                TODO: Optimize setting useCached, probably store reference somewhere to the iterator so you don't have to search every time
             */
@@ -997,40 +1520,60 @@ public class TransactionImpl implements InternalTransaction
                 return false;
             }
 
-            boolean success = false;
-            ArrayList<DelayedOperation> finished = new ArrayList<>();
+            // Cancelled and timed out operations leave at the stride boundary, if the leader leaves the next one leads
+            boolean success = this.dropAbandoned();
+
+            // Once either side has changes of its own they no longer read the same nodes, so sharing stops
+            if(this.shared && this.changed()) {
+                this.unshare("a transaction sharing its scan has changes of its own");
+            }
+            if(this.batch.size() == 0) {
+                return success;
+            }
+
             long first = this.batch.get(0).operation_num;
  //           System.out.println("starting propagation of batch w first element " + first);
-            for(int s = 0; s < STRIDE_SIZE; s++) {
-
-                // Do first one first, getting fresh value
-                this.batch.get(0).result.setUseCached(false);
-                String result = this.batch.get(0).result.lazyResultAsString();
-                if(result != null) {
-                    success = true;
-                    System.out.println(this.batch.get(0).query);
-                    System.out.println(result);
-                    finished.add(this.batch.get(0));
-                    finish_times.put(this.batch.get(0).operation_num, System.currentTimeMillis());
-                    completedOperationNumbers.addFirst(new CompletedOperationRecord(this.batch.get(0).operation_num, System.currentTimeMillis()));
-                }
-
-                // Do rest
-                for(int i = 1; i < batch.size(); i++) {
-                    this.batch.get(0).result.setUseCached(true);
-                    result = this.batch.get(i).result.lazyResultAsString();
-                    if(result != null) {
+            for(int s = 0; s < stride_size; s++) {
+
+                // First one gets a fresh value, the rest take the cached one
+                boolean leading = true;
+                int i = 0;
+                while(i < this.batch.size()) {
+                    this.batch.get(0).result.setUseCached(!leading);
+                    leading = false;
+                    DelayedOperation op = this.batch.get(i);
+                    boolean completed;
+                    try {
+                        completed = op.step();
+                    }
+                    catch(Exception e) {
+                        // Only this operation fails, the rest of the batch goes on
                         success = true;
-                        System.out.println(this.batch.get(i).query);
-                        System.out.println(result);
-                        finished.add(this.batch.get(i));
-                        finish_times.put(this.batch.get(i).operation_num, System.currentTimeMillis());
-                        completedOperationNumbers.addFirst(new CompletedOperationRecord(this.batch.get(i).operation_num, System.currentTimeMillis()));
+                        this.batch.remove(i);
+                        op.fail(e);
+                        if(op.deadline == this.deadline) {
+                            this.updateDeadline();
+                        }
+                        continue;
+                    }
+                    if(completed) {
+                        success = true;
+                        op.operations.finish(op.operation_num);
+                        for(long duplicate : op.duplicates) {
+                            op.operations.finish(duplicate);
+                        }
+                        op.leaveAttached();
+                        // Leaves right away, so no later step of this stride reads for it
+                        this.batch.remove(i);
+                        if(op.deadline == this.deadline) {
+                            this.updateDeadline();
+                        }
+                    }
+                    else {
+                        i++;
                     }
                 }
 
-                this.batch.removeAll(finished);
-                finished.clear();
                 this.num_times_propagated++;
                 if(this.batch.size() == 0) {
                     break;
@@ -1040,104 +1583,536 @@ public class TransactionImpl implements InternalTransaction
             return success;
         }
 
-    }
+        private boolean dropAbandoned() {
+            boolean dropped = false;
+            long now = System.currentTimeMillis();
+            int i = 0;
+            while(i < this.batch.size()) {
+                DelayedOperation op = this.batch.get(i);
+                if(op.abandoned(now)) {
+                    this.batch.remove(i);
+                    op.release();
+                    dropped = true;
+                }
+                else {
+                    i++;
+                }
+            }
+            if(dropped) {
+                this.updateDeadline();
+            }
+            return dropped;
+        }
 
-    private class BatchedOperationsArray {
-        BatchedOperation[] data;
-        volatile int oldest;
-        volatile int newest;
-        volatile int size;
-        ReentrantLock lock;
+        private boolean changed() {
+            if(this.owner.hasChanges()) {
+                return true;
+            }
+            for(DelayedOperation op : this.batch) {
+                if(op.attached_from != null && op.attached_from.hasChanges()) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        public BatchedOperationsArray() {
-            this.reset();
+        // Stops sharing the scan, operations of other transactions attached to it fail with reason. Called holding lock
+        void unshare(String reason) {
+            if(!this.shared) {
+                return;
+            }
+            this.shared = false;
+            this.owner.shared_scans.unregister(this);
+            int i = 0;
+            while(i < this.batch.size()) {
+                DelayedOperation op = this.batch.get(i);
+                if(op.attached_from != null) {
+                    this.batch.remove(i);
+                    op.fail(new IllegalStateException("Error: operation " + op.operation_num + " was attached to a scan that stopped being shared, " + reason));
+                }
+                else {
+                    i++;
+                }
+            }
+            this.updateDeadline();
         }
 
-        public void add(BatchedOperation batch) {
-            this.lock.lock();
-            this.data[this.newest++] = batch;
-            this.size++;
-            this.lock.unlock();
+        // Drops an operation attached from a transaction that is ending, false if it already left. Called holding lock
+        boolean detach(DelayedOperation op) {
+            if(!this.batch.remove(op)) {
+                return false;
+            }
+            op.cancel();
+            this.updateDeadline();
+            return true;
         }
 
-        public void remove(int index) {
-            this.lock.lock();
-            this.data[index] = null;
-            this.size--;
-            this.moveTail();
-            this.lock.unlock();
+        // A stride that threw leaves its batch part way through a step, so every operation in it fails
+        void fail(Throwable failure) {
+            for(DelayedOperation op : this.batch) {
+                op.fail(failure);
+            }
+            this.batch.clear();
+            this.updateDeadline();
         }
 
-        public void moveTail() {
-            while(this.size != 0 && this.oldest < this.newest && this.data[oldest] == null) {
-                this.oldest++;
+        void updateDeadline() {
+            long earliest = NO_DEADLINE;
+            for(DelayedOperation op : this.batch) {
+                earliest = Math.min(earliest, op.deadline);
             }
+            this.deadline = earliest;
         }
 
-        // Not 100% thread safe, but isn't the end of the world
-        public int size() {
-            return this.size;
+    }
+
+    /*
+       Bounded ring of the batches being propagated, in the order they were created. Every batch gets the next
+       sequence number and the slot seq % capacity. Batches can finish in any order, so a slot is freed by
+       remove and oldest only moves past freed slots. A slot's sequence number tells whether it is free for
+       the batch with sequence seq (seq), holds it (seq + 1) or was freed for the next lap (seq + capacity),
+       so add and remove need no lock and the indices wrap around.
+    */
+    @VisibleForTesting
+    static class BatchedOperationsArray {
+        static final int CAPACITY = 16384;
+        static final int MASK = CAPACITY - 1;
+
+        final AtomicReferenceArray<BatchedOperation> data = new AtomicReferenceArray<>(CAPACITY);
+        final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+        final AtomicLong oldest = new AtomicLong();
+        final AtomicLong newest = new AtomicLong();
+        final AtomicInteger size = new AtomicInteger();
+
+        public BatchedOperationsArray() {
+            for(int i = 0; i < CAPACITY; i++) {
+                this.sequences.set(i, i);
+            }
+        }
+
+        // False if the ring is full
+        public boolean add(BatchedOperation batch) {
+            while(true) {
+                long seq = this.newest.get();
+                if(seq - this.oldest.get() >= CAPACITY || this.sequences.get((int) (seq & MASK)) != seq) {
+                    return false;
+                }
+                if(this.newest.compareAndSet(seq, seq + 1)) {
+                    batch.index = seq;
+                    this.data.set((int) (seq & MASK), batch);
+                    this.size.incrementAndGet();
+                    this.sequences.set((int) (seq & MASK), seq + 1);
+                    return true;
+                }
+            }
         }
 
-        public void batch(int index) {
+        // Removing a batch that was already removed does nothing
+        // False if the batch was already removed
+        public boolean remove(long index) {
+            BatchedOperation batch = this.get(index);
+            if(batch != null && this.data.compareAndSet((int) (index & MASK), batch, null)) {
+                this.size.decrementAndGet();
+                this.sequences.set((int) (index & MASK), index + CAPACITY);
+                this.moveTail();
+                return true;
+            }
+            return false;
+        }
 
+        // The batch with this sequence number, null if it was removed or isn't added yet
+        public BatchedOperation get(long index) {
+            if(this.sequences.get((int) (index & MASK)) != index + 1) {
+                return null;
+            }
+            BatchedOperation batch = this.data.get((int) (index & MASK));
+            return batch != null && batch.index == index ? batch : null;
         }
 
-        public int getOldest() {
-            return this.oldest;
+        public void moveTail() {
+            long tail = this.oldest.get();
+            while(tail < this.newest.get() && this.sequences.get((int) (tail & MASK)) == tail + CAPACITY) {
+                this.oldest.compareAndSet(tail, tail + 1);
+                tail = this.oldest.get();
+            }
         }
 
-        public int getNewest() {
-            return this.newest;
+        public int size() {
+            return this.size.get();
         }
 
-        void reset() {
-            this.data = new BatchedOperation[16384];
-            this.newest = this.oldest = this.size = 0;
-            this.lock = new ReentrantLock();
+        public boolean isFull() {
+            return this.newest.get() - this.oldest.get() >= CAPACITY;
         }
 
+        public long getOldest() {
+            return this.oldest.get();
+        }
+
+        public long getNewest() {
+            return this.newest.get();
+        }
     }
 
     public void batchDelayed() {
 
         this.delayed_lock.lock();
+        this.dropAbandoned();
+
+        // Operations on a scan that is already running join it instead of waiting for it to finish
+        this.joinRunningScans();
 
-        // Make sure operations exist
-        if(this.delayed.size() == 0) {
+        // Make sure operations exist, and that there is room for another batch
+        if(this.delayed.size() == 0 || this.batched.isFull()) {
             this.delayed_lock.unlock();
             return;
         }
 
-        // Put up to MAX_BATCH_SIZE into "batch"
+        // Group operations by the scan that drives them, the oldest operation's group goes first
+        LinkedHashMap<String, ArrayList<DelayedOperation>> groups = new LinkedHashMap<>();
+        for(DelayedOperation op : this.delayed) {
+            groups.computeIfAbsent(op.batchKey(), k -> new ArrayList<>()).add(op);
+        }
+
+        // Take the group with the earliest deadline, or else the oldest group that is worth batching now, groups
+        // still expecting a partner wait
+        int max_batch_size = this.maxBatchSize();
+        long all_nodes = this.transaction.dataRead().countsForNode(TokenRead.ANY_LABEL);
+        long now = System.currentTimeMillis();
+        Map.Entry<String, ArrayList<DelayedOperation>> first = null;
+        long first_deadline = NO_DEADLINE;
+        for(Map.Entry<String, ArrayList<DelayedOperation>> group : groups.entrySet()) {
+            long deadline = earliestDeadline(group.getValue());
+            if((first == null || deadline < first_deadline) &&
+               (deadline != NO_DEADLINE || this.readyToBatch(group.getKey(), group.getValue(), max_batch_size, all_nodes, now))) {
+                first = group;
+                first_deadline = deadline;
+            }
+        }
+        if(first == null) {
+            this.delayed_lock.unlock();
+            return;
+        }
+
+        // Put up to max_batch_size of that group into "batch", those sharing the most with the oldest first and
+        // operations with a deadline before the rest. Writes that conflict with a member wait for a later batch
+        DelayedOperation oldest = first.getValue().get(0);
         ArrayList<DelayedOperation> batch = new ArrayList<>();
-        int i = 0;
-        while(batch.size() < MAX_BATCH_SIZE && i < this.delayed.size()) {
-            batch.add(this.delayed.get(i));
-            i++;
+        for(int urgent = 1; urgent >= 0; urgent--) {
+            for(int rank = 0; rank <= 2; rank++) {
+                for(DelayedOperation op : first.getValue()) {
+                    if(batch.size() < max_batch_size && batchRank(oldest, op) == rank &&
+                       (op.deadline != NO_DEADLINE) == (urgent == 1) && !conflicts(batch, op)) {
+                        batch.add(op);
+                    }
+                }
+            }
+        }
+        orderWrites(batch, 0);
+
+        // Fill up the rest with other scans if one all-nodes scan is cheaper than scanning separately
+        if(batch.size() < max_batch_size && batch.get(0).shares_all_nodes) {
+            ArrayList<DelayedOperation> riders = new ArrayList<>();
+            for(Map.Entry<String, ArrayList<DelayedOperation>> group : groups.entrySet()) {
+                if(group == first) {
+                    continue;
+                }
+                for(DelayedOperation op : group.getValue()) {
+                    if(op.shares_all_nodes && op.read_only && batch.size() + riders.size() < max_batch_size &&
+                       !conflicts(batch, op)) {
+                        riders.add(op);
+                    }
+                }
+            }
+            if(!riders.isEmpty() && this.allNodesScanCheaper(batch, riders)) {
+                batch.addAll(riders);
+                this.leadWithAllNodesScan(batch);
+                orderWrites(batch, 1);
+            }
         }
 
-        // Initialize first
+        // Initialize first, over a scan that covers the whole batch
+        ArrayList<Result> results = new ArrayList<>();
+        for(DelayedOperation op : batch) {
+            results.add(op.result);
+        }
+        int scan_workers = this.reserveScanWorkers(batch);
+        batch.get(0).result.prepareSharedScan(results, scan_workers, this.scan_pool);
+        batch.get(0).result.prepareSharedFilters(results);
         batch.get(0).result.initializeForBatching();
 
         // Set nodes of 2->end to be same as first
-        for(i = 1; i < batch.size(); i++) {
+        for(int i = 1; i < batch.size(); i++) {
             batch.get(i).result.batchWith(batch.get(0).result);
         }
+        batch.get(0).result.prepareSharedCaches(results);
 
         // Initialize rest
         // TODO: Needed? Or done auto on first prop?
 
+        // Added holding delayed_lock like every batch, so the room isFull found above is still there, and submitted
+        // in the order the batches were added
+        BatchedOperation batched_operation = new BatchedOperation(batch, this);
+        batched_operation.scan_workers = scan_workers;
+        if(!this.batched.add(batched_operation)) {
+            System.out.println("Error in batchDelayed: no room for a batch after checking for it");
+            System.exit(1);
+        }
+        if(this.shared_scans != null && batched_operation.scan_key != null && this.readsCommittedOnly(batch)) {
+            batched_operation.shared = true;
+            this.shared_scans.register(batched_operation);
+        }
+        if(this.scheduler != null) {
+            this.scheduler.submit(batched_operation);
+        }
         this.delayed.removeAll(batch);
         this.delayed_lock.unlock();
 
-        this.batched.add(new BatchedOperation(batch));
-        System.out.println("New batch of " + batch.size());
+    }
+
+    /*
+       Late join: a label or all-nodes scan that is part way through picks up new operations on the same scan at the
+       row it is on, and wraps around to its start for the rows they missed. Each joined operation finishes once
+       the scan is back at the row it joined at. Called holding delayed_lock.
+    */
+    private void joinRunningScans() {
+        int max_batch_size = this.maxBatchSize();
+        Iterator<DelayedOperation> it = this.delayed.iterator();
+        while(it.hasNext()) {
+            DelayedOperation op = it.next();
+            if(op.scan_key != null && this.joinRunningScan(op, max_batch_size)) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean joinRunningScan(DelayedOperation op, int max_batch_size) {
+        for(long i = this.batched.getOldest(); i < this.batched.getNewest(); i++) {
+            BatchedOperation running = this.batched.get(i);
+            if(running != null && joinBatch(running, op, max_batch_size)) {
+                return true;
+            }
+        }
+
+        // Scans of other transactions read the same committed nodes as long as neither has changes of its own
+        if(this.shared_scans == null || !op.read_only || this.hasChanges()) {
+            return false;
+        }
+        for(LazySharedScans.SharedScan scan : this.shared_scans.running(op.scan_key)) {
+            BatchedOperation running = (BatchedOperation) scan;
+            // Only the owner's workers step an attached operation, an owner propagating on its caller's thread may
+            // stop calling at any time
+            if(running.owner != this && running.owner.isPropagating() && !running.owner.hasChanges()) {
+                // Counted before it joins, the owner may complete it right after
+                op.attached_from = this;
+                op.attached_to = running;
+                this.attached_elsewhere.add(op);
+                if(joinBatch(running, op, max_batch_size)) {
+                    return true;
+                }
+                this.attached_elsewhere.remove(op);
+                op.attached_from = null;
+                op.attached_to = null;
+            }
+        }
+        return false;
+    }
+
+    private static boolean joinBatch(BatchedOperation running, DelayedOperation op, int max_batch_size) {
+        // A batch being propagated is skipped rather than waited for, and only reads join batches that only read
+        if(!op.read_only || running.writes || !running.lock.tryLock()) {
+            return false;
+        }
+        try {
+            // A scan that stopped being shared since it was looked up takes no more operations of other transactions
+            if(op.attached_from != null && !running.shared) {
+                return false;
+            }
+            if(running.batch.size() > 0 && running.batch.size() < max_batch_size &&
+               op.scan_key.equals(running.batch.get(0).scan_key) &&
+               op.result.joinSharedScan(running.batch.get(0).result)) {
+                running.batch.add(op);
+                running.deadline = Math.min(running.deadline, op.deadline);
+                return true;
+            }
+        }
+        finally {
+            running.lock.unlock();
+        }
+        return false;
+    }
+
+    /*
+       Database-wide scan sharing: a batch of read-only operations of a transaction without changes is registered
+       with the database's LazySharedScans while it runs, and operations of other such transactions may join it
+       like a late join while the owner has propagation workers. Attached operations are stepped by those workers
+       and count as remaining in their own transaction until they complete. A scan stops being shared when its
+       transaction ends or stops propagating, or once either side has changes of its own, and the operations
+       attached to it fail. An operation attached elsewhere
+       leaves its batch when its own transaction ends, so no result of a closed transaction is stepped.
+    */
+    private LazySharedScans shared_scans;
+    private final Set<DelayedOperation> attached_elsewhere = ConcurrentHashMap.newKeySet();
+
+    private boolean hasChanges() {
+        return this.transaction instanceof TxStateHolder && ((TxStateHolder) this.transaction).hasTxStateWithChanges();
+    }
+
+    private boolean readsCommittedOnly(ArrayList<DelayedOperation> batch) {
+        for(DelayedOperation op : batch) {
+            if(!op.read_only) {
+                return false;
+            }
+        }
+        return !this.hasChanges();
+    }
+
+    private void removeBatch(BatchedOperation batch) {
+        if(this.batched.remove(batch.index) && batch.scan_workers > 1) {
+            this.scan_worker_permits.release(batch.scan_workers);
+        }
+        if(this.shared_scans != null && batch.scan_key != null) {
+            this.shared_scans.unregister(batch);
+        }
+    }
+
+    // Waits for the strides running on the batches involved, called before the transaction ends
+    private void unshareScans() {
+        if(this.shared_scans == null) {
+            return;
+        }
+        this.unshareOwnScans("its transaction ended");
+        for(DelayedOperation op : this.attached_elsewhere) {
+            BatchedOperation running = op.attached_to;
+            running.lock.lock();
+            try {
+                running.detach(op);
+            }
+            finally {
+                running.lock.unlock();
+            }
+        }
+    }
+
+    private void unshareOwnScans(String reason) {
+        for(long i = this.batched.getOldest(); i < this.batched.getNewest(); i++) {
+            BatchedOperation batch = this.batched.get(i);
+            if(batch != null && batch.scan_key != null) {
+                batch.lock.lock();
+                try {
+                    batch.unshare(reason);
+                }
+                finally {
+                    batch.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /*
+       How much an operation shares with the oldest of its group, lower is more. The same template runs the same
+       cached plan with its own parameters, and the filters of all of them are evaluated together. Filters on the
+       same properties still share their property reads.
+    */
+    private static int batchRank(DelayedOperation oldest, DelayedOperation op) {
+        if(op.query.equals(oldest.query)) {
+            return 0;
+        }
+        return Objects.equals(op.filter_key, oldest.filter_key) ? 1 : 2;
+    }
+
+    private static long earliestDeadline(ArrayList<DelayedOperation> group) {
+        long earliest = NO_DEADLINE;
+        for(DelayedOperation op : group) {
+            earliest = Math.min(earliest, op.deadline);
+        }
+        return earliest;
+    }
+
+    /*
+       Write-aware batching. Every step of a batch runs its members in batch order, so the reads come first and see
+       the graph as the step found it, then the writes apply in the order the operations arrived. The shared scan
+       skips the nodes the batch creates, and members whose writes could change what another member reads, see
+       Result.lazyConflictsWith, aren't batched together.
+    */
+    private static boolean conflicts(ArrayList<DelayedOperation> batch, DelayedOperation op) {
+        for(DelayedOperation member : batch) {
+            if((!member.read_only || !op.read_only) && member.result.lazyConflictsWith(op.result)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Moves the writes after the reads from index from on, keeping the order of each
+    private static void orderWrites(ArrayList<DelayedOperation> batch, int from) {
+        ArrayList<DelayedOperation> writes = new ArrayList<>();
+        for(int i = batch.size() - 1; i >= from; i--) {
+            if(!batch.get(i).read_only) {
+                writes.add(0, batch.remove(i));
+            }
+        }
+        batch.addAll(writes);
+    }
+
+    final static long MAX_BATCH_WAIT_MS = 5;
+    final static double FULL_BATCH_SCAN_FRACTION = 0.1;
+
+    /*
+       How many operations a scan is worth batching for. Selective scans, like a seek for a few keys, finish within
+       a stride and gain little from waiting for partners, scans reading FULL_BATCH_SCAN_FRACTION of all nodes or
+       more are worth a full batch.
+    */
+    private int targetBatchSize(DelayedOperation op, int max_batch_size, long all_nodes) {
+        if(op.scan_key == null) {
+            return 1;
+        }
+        double fraction = all_nodes == 0 ? 1.0 : Math.min(1.0, (double) op.scan_cost / all_nodes);
+        return Math.max(1, (int) Math.ceil(max_batch_size * Math.min(1.0, fraction / FULL_BATCH_SCAN_FRACTION)));
+    }
 
+    private boolean readyToBatch(String key, ArrayList<DelayedOperation> group, int max_batch_size, long all_nodes, long now) {
+        if(group.size() >= this.targetBatchSize(group.get(0), max_batch_size, all_nodes)) {
+            return true;
+        }
+        long waited = now - group.get(0).arrival_time;
+        if(waited >= MAX_BATCH_WAIT_MS) {
+            return true;
+        }
+        // Only hold back while another operation on this scan is expected within the wait that's left
+        Double gap = this.arrival_gaps.get(key);
+        return gap == null || gap > MAX_BATCH_WAIT_MS - waited;
+    }
+
+    private boolean allNodesScanCheaper(ArrayList<DelayedOperation> batch, ArrayList<DelayedOperation> riders) {
+        // Each distinct scan would be run once on its own, compare that with running a single all-nodes scan
+        HashMap<String, Long> separate = new HashMap<>();
+        for(DelayedOperation op : batch) {
+            separate.put(op.scan_key, op.scan_cost);
+        }
+        for(DelayedOperation op : riders) {
+            separate.put(op.scan_key, op.scan_cost);
+        }
+        long separate_cost = 0;
+        for(long cost : separate.values()) {
+            separate_cost += cost;
+        }
+        return this.transaction.dataRead().countsForNode(TokenRead.ANY_LABEL) <= separate_cost;
+    }
+
+    private void leadWithAllNodesScan(ArrayList<DelayedOperation> batch) {
+        // The first operation drives the shared scan, so it has to be scanning all nodes, and stays a read if it is one
+        for(int i = 0; i < batch.size(); i++) {
+            if(Result.ALL_NODES_SCAN_KEY.equals(batch.get(i).scan_key) && (batch.get(i).read_only || !batch.get(0).read_only)) {
+                batch.add(0, batch.remove(i));
+                return;
+            }
+        }
+        batch.get(0).result.widenToAllNodesScan();
     }
 
     public int operationsRemaining() {
-        return this.delayedOperationsRemaining() + this.batchedOperationsRemaining();
+        return this.delayedOperationsRemaining() + this.batchedOperationsRemaining() + this.attached_elsewhere.size();
     }
 
     public int batchedOperationsRemaining() {
@@ -1148,22 +2123,273 @@ public class TransactionImpl implements InternalTransaction
         return this.delayed.size();
     }
 
+    // Moving average of the time between operations on each scan, guarded by delayed_lock
+    private HashMap<String, Long> last_arrivals = new HashMap<>();
+    private HashMap<String, Double> arrival_gaps = new HashMap<>();
+    private void recordArrival(String scan_key, long time) {
+        Long last = this.last_arrivals.put(scan_key, time);
+        if(last != null) {
+            Double gap = this.arrival_gaps.get(scan_key);
+            this.arrival_gaps.put(scan_key, gap == null ? (double) (time - last) : 0.8 * gap + 0.2 * (time - last));
+        }
+    }
+
+    final static long BACKPRESSURE_WAIT_NANOS = 100_000;
     public long lazyExecute(String query) {
-        DelayedOperation delayed = new DelayedOperation(query,this.execute(query));
-        this.start_times.put(delayed.operation_num, System.currentTimeMillis());
+        return this.lazyExecute(query, emptyMap());
+    }
+
+    // Operations on the same template share its parsed and planned query, only their parameters differ
+    public long lazyExecute(String template, Map<String, Object> params) {
+        // An exact duplicate of an operation still waiting to be batched shares its execution and its result
+        this.delayed_lock.lock();
+        try {
+            DelayedOperation original = this.delayedDuplicate(template, params);
+            if(original != null) {
+                return original.addDuplicate(this.operations.start());
+            }
+        }
+        finally {
+            this.delayed_lock.unlock();
+        }
+        Result result = this.executeWithRoom(template, params);
+        return this.delay(new DelayedOperation(this.operations.start(), template, params, result)).operation_num;
+    }
+
+    // Streams the rows to visitor on the propagating thread as they are produced, a slow visitor holds back its batch
+    // and returning false stops the operation
+    public long lazyExecute(String template, Map<String, Object> params, Result.ResultVisitor<? extends Exception> visitor) {
+        return this.lazyExecute(template, params, visitor, columns -> {});
+    }
+
+    // columns is given the columns of the operation before any row can reach visitor
+    public long lazyExecute(String template, Map<String, Object> params, Result.ResultVisitor<? extends Exception> visitor,
+                            Consumer<List<String>> columns) {
+        Result result = this.executeWithRoom(template, params);
+        columns.accept(result.columns());
+        return this.delay(new DelayedOperation(this.operations.start(), template, params, result, visitor)).operation_num;
+    }
+
+    // An operation that should complete within within_ms goes ahead of operations without a deadline, and of those
+    // with a later one, and is batched without waiting for partners
+    public long lazyExecuteWithin(String template, Map<String, Object> params, long within_ms) {
+        Result result = this.executeWithRoom(template, params);
+        DelayedOperation delayed = new DelayedOperation(this.operations.start(), template, params, result);
+        delayed.deadline = System.currentTimeMillis() + Math.max(0, within_ms);
+        return this.delay(delayed).operation_num;
+    }
+
+    public CompletableFuture<List<Map<String, Object>>> lazyExecuteAsync(String template, Map<String, Object> params) {
+        Result result = this.executeWithRoom(template, params);
+        DelayedOperation delayed = new DelayedOperation(this.operations.start(), template, params, result);
+        delayed.collectRows();
+        return this.delay(delayed).completion;
+    }
+
+    private Result executeWithRoom(String template, Map<String, Object> params) {
+        // Hold back new operations until there is room for their batch, propagating here unless workers of this
+        // transaction drain its batches
+        while(this.batched.isFull()) {
+            if(this.isPropagating()) {
+                LockSupport.parkNanos(BACKPRESSURE_WAIT_NANOS);
+            }
+            else {
+                this.propagateOldest();
+            }
+        }
+
+        return this.execute(template, params);
+    }
+
+    @VisibleForTesting
+    DelayedOperation delay(DelayedOperation delayed) {
+        delayed.operations = this.operations;
+        delayed.print_result = this.print_results;
         this.delayed_lock.lock();
         this.delayed.add(delayed);
+        if(delayed.scan_key != null) {
+            this.recordArrival(delayed.scan_key, delayed.arrival_time);
+        }
         this.delayed_lock.unlock();
-        return delayed.operation_num;
+        return delayed;
+    }
+
+    // Only read-only operations whose plan calls no function that can give another value on every call, e.g.
+    // rand(), share a result. Called holding delayed_lock
+    private DelayedOperation delayedDuplicate(String template, Map<String, Object> params) {
+        for(DelayedOperation op : this.delayed) {
+            if(op.deterministic && op.visitor == null && op.query.equals(template) && op.params.equals(params)) {
+                return op;
+            }
+        }
+        return null;
+    }
+
+    private void propagateOldest() {
+        BatchedOperation batch = this.batched.get(this.batched.getOldest());
+        if(batch == null) {
+            this.batched.moveTail();
+            return;
+        }
+        batch.lock.lock();
+        try {
+            if(batch.batch.size() > 0) {
+                batch.propagate(this.strideSize());
+            }
+        }
+        catch(Throwable t) {
+            batch.fail(t);
+        }
+        finally {
+            if(batch.batch.size() == 0) {
+                this.removeBatch(batch);
+            }
+            batch.lock.unlock();
+        }
+    }
+
+    // Forms batches of the delayed operations and, unless workers of this transaction are propagating, propagates a
+    // stride of the oldest batch on the calling thread, true while operations remain
+    public boolean lazyPropagate() {
+        this.batchDelayed();
+        if(this.scheduler == null && this.batchedOperationsRemaining() > 0) {
+            this.propagateOldest();
+        }
+        return this.operationsRemaining() > 0;
+    }
+
+    // Cancels an operation that hasn't completed, false if it already has or was cancelled. Until it is batched it
+    // is dropped right away, otherwise its batch drops it and lets go of its result at the next stride boundary
+    public boolean lazyCancel(long operationNum) {
+        if(!this.operations.cancel(operationNum)) {
+            return false;
+        }
+        this.delayed_lock.lock();
+        try {
+            this.dropAbandoned();
+        }
+        finally {
+            this.delayed_lock.unlock();
+        }
+        return true;
+    }
+
+    // Cancels the operation unless it completes within timeout_ms, false if it already has
+    public boolean lazyTimeout(long operationNum, long timeout_ms) {
+        return this.operations.timeout(operationNum, System.currentTimeMillis() + Math.max(0, timeout_ms));
+    }
+
+    // Called holding delayed_lock
+    private void dropAbandoned() {
+        long now = System.currentTimeMillis();
+        Iterator<DelayedOperation> it = this.delayed.iterator();
+        while(it.hasNext()) {
+            DelayedOperation op = it.next();
+            if(op.abandoned(now)) {
+                it.remove();
+                op.release();
+            }
+        }
+    }
+
+    // True once the operation has completed, failed or was cancelled, all its rows have been passed on by then
+    public boolean lazyCompleted(long operationNum) {
+        return this.operations.finished(operationNum);
+    }
+
+    // Completed once the operation has completed, exceptionally with its failure if it failed, cancelled if it was
+    public CompletableFuture<?> lazyCompletion(long operationNum) {
+        this.delayed_lock.lock();
+        try {
+            // Operations only move between delayed, batched and attached_elsewhere holding delayed_lock
+            DelayedOperation op = this.findOperation(operationNum);
+            if(op != null) {
+                return op.completion;
+            }
+        }
+        finally {
+            this.delayed_lock.unlock();
+        }
+        long time = this.operations.operationTime(operationNum);
+        Throwable failure = this.operations.failure(operationNum);
+        if(failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        if(time == OperationRegistry.CANCELLED) {
+            CompletableFuture<?> cancelled = new CompletableFuture<>();
+            cancelled.cancel(false);
+            return cancelled;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Called holding delayed_lock, null once the operation has left its batch
+    private DelayedOperation findOperation(long operationNum) {
+        for(DelayedOperation op : this.delayed) {
+            if(op.answers(operationNum)) {
+                return op;
+            }
+        }
+        for(DelayedOperation op : this.attached_elsewhere) {
+            if(op.answers(operationNum)) {
+                return op;
+            }
+        }
+        for(long i = this.batched.getOldest(); i < this.batched.getNewest(); i++) {
+            BatchedOperation batch = this.batched.get(i);
+            if(batch == null) {
+                continue;
+            }
+            batch.lock.lock();
+            try {
+                for(DelayedOperation op : batch.batch) {
+                    if(op.answers(operationNum)) {
+                        return op;
+                    }
+                }
+            }
+            finally {
+                batch.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    // Why a completed operation failed, null if it didn't fail or is too old to tell
+    public Throwable lazyFailure(long operationNum) {
+        return this.operations.failure(operationNum);
+    }
+
+    // Partial result of an operation that hasn't finished yet, see Result.lazyPartialResult, null if there is none
+    public List<Map<String,Object>> lazyPartialResult(long operationNum) {
+        for(long i = this.batched.getOldest(); i < this.batched.getNewest(); i++) {
+            BatchedOperation batch = this.batched.get(i);
+            if(batch == null) {
+                continue;
+            }
+            // Wait for a propagating thread to finish its stride
+            batch.lock.lock();
+            try {
+                for(DelayedOperation op : batch.batch) {
+                    if(op.answers(operationNum)) {
+                        return op.result.lazyPartialResult();
+                    }
+                }
+            }
+            finally {
+                batch.lock.unlock();
+            }
+        }
+        return null;
     }
 
     final static int WORK_TOLERANCE = 3;
     public boolean propagateBatchedParallel() {
         boolean success = false;
-        for (int i = this.batched.oldest; i < this.batched.newest; i++) {
-            if (this.batched.data[i] != null && !this.batched.data[i].lock.isLocked()) {
+        for (long i = this.batched.getOldest(); i < this.batched.getNewest(); i++) {
+            BatchedOperation batch = this.batched.get(i);
+            if (batch != null && !batch.lock.isLocked()) {
                 if (((ThreadPoolExecutor) this.thread_pool).getQueue().size() < NUM_THREADS * WORK_TOLERANCE) {
-                    this.batched.batch(i);
                     this.thread_pool.execute(new PropagateRunner(i));
                     return true;
                     //success = true;
@@ -1202,41 +2428,222 @@ public class TransactionImpl implements InternalTransaction
         return false;
     }
 
-    private static ConcurrentHashMap<Long, Long> start_times = new ConcurrentHashMap<>();
-    private static ConcurrentHashMap<Long, Long> finish_times = new ConcurrentHashMap<>();
+    // Start and finish of the operations of this transaction, see OperationRegistry
+    private final OperationRegistry operations = new OperationRegistry();
     public void getOperationTime(long operationNum) {
-        if(!start_times.containsKey(operationNum)) {
+        long time = this.operations.operationTime(operationNum);
+        if(time == OperationRegistry.NOT_STARTED) {
             System.out.println("ERROR: No start time for operation num " + operationNum);
         }
-        else if(!finish_times.containsKey(operationNum)) {
+        else if(time == OperationRegistry.NOT_FINISHED) {
             System.out.println("ERROR: No end time for operation num " + operationNum);
         }
+        else if(time == OperationRegistry.FORGOTTEN) {
+            System.out.println("ERROR: Time of operation num " + operationNum + " is no longer kept");
+        }
+        else if(time == OperationRegistry.CANCELLED) {
+            System.out.println("ERROR: Operation num " + operationNum + " was cancelled");
+        }
+        else if(time == OperationRegistry.FAILED) {
+            System.out.println("ERROR: Operation num " + operationNum + " failed: " + this.operations.failure(operationNum));
+        }
         else {
-            System.out.println(finish_times.get(operationNum) - start_times.get(operationNum));
+            System.out.println(time);
         }
     }
     public void shutdownThreadPool() {
         this.thread_pool.shutdown();
+        this.shutdownScanPool();
     }
 
-    public static class CompletedOperationRecord {
-        long operationNumber;
-        long timeCompleted;
-        public CompletedOperationRecord(long operationNumber, long timeCompleted) {
-            this.operationNumber = operationNumber;
-            this.timeCompleted = timeCompleted;
-        }
-    }
-    private static LinkedList<CompletedOperationRecord> completedOperationNumbers = new LinkedList<>();
     public long getNumCompletedInSeconds( long seconds, long time_from ) {
-        long min_allowed_time = time_from - 1000*seconds;
-        long count = 0;
-        for(CompletedOperationRecord r : completedOperationNumbers) {
-            if (r.timeCompleted < min_allowed_time) {
-                return count;
+        return this.operations.completedSince(time_from - 1000*seconds, time_from);
+    }
+
+    // Upper bound of the latency in ms under which the given fraction of the finished operations completed
+    public long lazyLatencyPercentile(double fraction) {
+        return this.operations.latencyPercentile(fraction);
+    }
+
+    /*
+       Ids, start times and completion metrics of the lazy operations of one transaction, safe to use from any
+       thread and flat in memory however many operations run. Start times are only kept until an operation
+       finishes, the latencies of the last RECENT operations stay readable by id, and every latency is counted in
+       a histogram of power of two buckets. Completions are counted in a ring of WINDOW_SLOTS time slots, each a
+       single long holding the slot's time and its count, so recording and counting over a window need no lock
+       and don't depend on the number of operations.
+    */
+    @VisibleForTesting
+    static class OperationRegistry {
+        static final long NOT_STARTED = -1;
+        static final long NOT_FINISHED = -2;
+        static final long FORGOTTEN = -3;
+        static final long CANCELLED = -4;
+        static final long FAILED = -5;
+
+        static final int RECENT = 65536;
+        static final int RECENT_MASK = RECENT - 1;
+        static final long SLOT_MS = 100;
+        static final int WINDOW_SLOTS = 1024;
+        static final int COUNT_BITS = 28;
+        static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        final AtomicLong next_operation_num = new AtomicLong();
+        final ConcurrentHashMap<Long, Long> running = new ConcurrentHashMap<>();
+
+        // Time by which a running operation is cancelled, only for operations given a timeout
+        final ConcurrentHashMap<Long, Long> timeouts = new ConcurrentHashMap<>();
+
+        // Slot operation_num % RECENT holds the id and the latency of the last operation that finished in it
+        final AtomicLongArray recent_nums = new AtomicLongArray(RECENT);
+        final AtomicLongArray recent_times = new AtomicLongArray(RECENT);
+        // Why the operation in the slot failed, if its time is FAILED
+        final AtomicReferenceArray<Throwable> recent_failures = new AtomicReferenceArray<>(RECENT);
+
+        // Bucket b counts the latencies below 2^b ms that don't fit in b - 1
+        final AtomicLongArray latencies = new AtomicLongArray(Long.SIZE);
+
+        final AtomicLongArray completions = new AtomicLongArray(WINDOW_SLOTS);
+
+        OperationRegistry() {
+            for(int i = 0; i < RECENT; i++) {
+                this.recent_nums.set(i, -1);
+            }
+        }
+
+        long start() {
+            long operation_num = this.next_operation_num.getAndIncrement();
+            this.running.put(operation_num, System.currentTimeMillis());
+            return operation_num;
+        }
+
+        void finish(long operation_num) {
+            long now = System.currentTimeMillis();
+            Long start = this.running.remove(operation_num);
+            if(start != null) {
+                long latency = Math.max(0, now - start);
+                this.timeouts.remove(operation_num);
+                this.remember(operation_num, latency);
+                this.latencies.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(latency));
+                this.countCompletion(now);
+            }
+        }
+
+        // False if the operation isn't running anymore, a cancelled operation isn't counted as completed
+        boolean cancel(long operation_num) {
+            if(this.running.remove(operation_num) == null) {
+                return false;
+            }
+            this.timeouts.remove(operation_num);
+            this.remember(operation_num, CANCELLED);
+            return true;
+        }
+
+        // Like cancel, but kept as failed with failure. A failed operation isn't counted as completed either
+        boolean fail(long operation_num, Throwable failure) {
+            if(this.running.remove(operation_num) == null) {
+                return false;
+            }
+            this.timeouts.remove(operation_num);
+            this.remember(operation_num, FAILED, failure);
+            return true;
+        }
+
+        // Why the operation failed, null if it didn't or that is no longer kept
+        Throwable failure(long operation_num) {
+            return this.operationTime(operation_num) == FAILED ? this.recent_failures.get((int) (operation_num & RECENT_MASK)) : null;
+        }
+
+        boolean timeout(long operation_num, long at) {
+            if(!this.running.containsKey(operation_num)) {
+                return false;
+            }
+            this.timeouts.put(operation_num, at);
+            return true;
+        }
+
+        // True once the operation was cancelled or has completed, cancelling it first if its timeout has passed
+        boolean abandoned(long operation_num, long now) {
+            Long at = this.timeouts.get(operation_num);
+            if(at != null && now >= at) {
+                this.cancel(operation_num);
+            }
+            return !this.running.containsKey(operation_num);
+        }
+
+        private void remember(long operation_num, long time) {
+            this.remember(operation_num, time, null);
+        }
+
+        private void remember(long operation_num, long time, Throwable failure) {
+            int slot = (int) (operation_num & RECENT_MASK);
+            // Cleared while the time is written, so a reader never pairs one operation's id with another's time
+            this.recent_nums.set(slot, -1);
+            this.recent_times.set(slot, time);
+            this.recent_failures.set(slot, failure);
+            this.recent_nums.set(slot, operation_num);
+        }
+
+        boolean finished(long operation_num) {
+            return operation_num >= 0 && operation_num < this.next_operation_num.get() && !this.running.containsKey(operation_num);
+        }
+
+        long operationTime(long operation_num) {
+            if(operation_num < 0 || operation_num >= this.next_operation_num.get()) {
+                return NOT_STARTED;
+            }
+            if(this.running.containsKey(operation_num)) {
+                return NOT_FINISHED;
+            }
+            int slot = (int) (operation_num & RECENT_MASK);
+            long before = this.recent_nums.get(slot);
+            long time = this.recent_times.get(slot);
+            return before == operation_num && this.recent_nums.get(slot) == operation_num ? time : FORGOTTEN;
+        }
+
+        private void countCompletion(long now) {
+            long time_slot = now / SLOT_MS;
+            int index = (int) (time_slot % WINDOW_SLOTS);
+            while(true) {
+                long current = this.completions.get(index);
+                long next = (current >>> COUNT_BITS) == time_slot ? current + 1 : (time_slot << COUNT_BITS) | 1;
+                if(this.completions.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+
+        // Completions from from_time to to_time, to a slot, over at most WINDOW_SLOTS slots back from to_time
+        long completedSince(long from_time, long to_time) {
+            long last = to_time / SLOT_MS;
+            long first = Math.max(from_time / SLOT_MS, last - WINDOW_SLOTS + 1);
+            long count = 0;
+            for(long time_slot = first; time_slot <= last; time_slot++) {
+                long current = this.completions.get((int) (time_slot % WINDOW_SLOTS));
+                if((current >>> COUNT_BITS) == time_slot) {
+                    count += current & COUNT_MASK;
+                }
+            }
+            return count;
+        }
+
+        long latencyPercentile(double fraction) {
+            long total = 0;
+            for(int b = 0; b < Long.SIZE; b++) {
+                total += this.latencies.get(b);
+            }
+            if(total == 0) {
+                return 0;
+            }
+            long wanted = (long) Math.ceil(Math.min(1.0, Math.max(0.0, fraction)) * total);
+            long seen = 0;
+            for(int b = 0; b < Long.SIZE; b++) {
+                seen += this.latencies.get(b);
+                if(seen >= Math.max(1, wanted)) {
+                    return b == 0 ? 0 : (1L << b) - 1;
+                }
             }
-            count++;
+            return Long.MAX_VALUE;
         }
-        return count;
     }
 }
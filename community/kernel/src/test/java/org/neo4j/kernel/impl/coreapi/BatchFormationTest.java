@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.DelayedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry;
+
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
+import static org.neo4j.graphdb.Result.ALL_NODES_SCAN_KEY;
+
+class BatchFormationTest
+{
+    private final KernelTransaction kernelTransaction = mock( KernelTransaction.class, RETURNS_DEEP_STUBS );
+    private final TransactionImpl transaction = new TransactionImpl( null, null, null, null, kernelTransaction );
+    private final OperationRegistry operations = new OperationRegistry();
+
+    @AfterEach
+    void tearDown()
+    {
+        transaction.shutdownThreadPool();
+    }
+
+    @Test
+    void shouldBatchOperationsOnTheSameScanTogether()
+    {
+        // given a full batch for the scan
+        allNodes( 100 );
+        transaction.setMaxBatchSize( () -> 2 );
+        DelayedOperation first = delay( "MATCH (n:A) RETURN n", "Label(1)", 50 );
+        DelayedOperation other = delay( "MATCH (n:B) RETURN n", "Label(2)", 50 );
+        DelayedOperation second = delay( "MATCH (n:A) RETURN n.x", "Label(1)", 50 );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( first, second ) ) );
+        assertThat( transaction.delayed, contains( other ) );
+    }
+
+    @Test
+    void shouldLetLabelScansRideAnAllNodesScanThatIsCheaper()
+    {
+        // given
+        allNodes( 100 );
+        DelayedOperation all = delay( "MATCH (n) RETURN n", ALL_NODES_SCAN_KEY, 100 );
+        DelayedOperation a = delay( "MATCH (n:A) RETURN n", "Label(1)", 60 );
+        DelayedOperation b = delay( "MATCH (n:B) RETURN n", "Label(2)", 60 );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( all, a, b ) ) );
+    }
+
+    @Test
+    void shouldScanCheapLabelsOnTheirOwn()
+    {
+        // given
+        allNodes( 1000 );
+        DelayedOperation a = delay( "MATCH (n:A) RETURN n", "Label(1)", 10 );
+        DelayedOperation b = delay( "MATCH (n:B) RETURN n", "Label(2)", 10 );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( a ) ) );
+        assertThat( transaction.delayed, contains( b ) );
+    }
+
+    @Test
+    void shouldHoldBackAGroupWhileAPartnerIsExpected()
+    {
+        // given operations on a scan worth a full batch, arriving right after each other
+        allNodes( 100 );
+        long arrival = System.currentTimeMillis() + 60_000;
+        DelayedOperation first = delay( "MATCH (n:A) RETURN n", "Label(1)", 100, null, arrival );
+        DelayedOperation second = delay( "MATCH (n:A) RETURN n.x", "Label(1)", 100, null, arrival );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), empty() );
+        assertThat( transaction.delayed, contains( first, second ) );
+    }
+
+    @Test
+    void shouldBatchAGroupOnceItWaitedLongEnough()
+    {
+        // given
+        allNodes( 100 );
+        long arrival = System.currentTimeMillis() - TransactionImpl.MAX_BATCH_WAIT_MS - 10;
+        DelayedOperation first = delay( "MATCH (n:A) RETURN n", "Label(1)", 100, null, arrival );
+        DelayedOperation second = delay( "MATCH (n:A) RETURN n.x", "Label(1)", 100, null, arrival + 1 );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( first, second ) ) );
+    }
+
+    @Test
+    void shouldNotHoldBackAGroupWhenNoPartnerIsExpected()
+    {
+        // given the first operation on its scan
+        allNodes( 100 );
+        DelayedOperation op = delay( "MATCH (n:A) RETURN n", "Label(1)", 100 );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( op ) ) );
+    }
+
+    @Test
+    void shouldFillABatchWithTheMostSimilarOperationsFirst()
+    {
+        // given
+        allNodes( 100 );
+        transaction.setMaxBatchSize( () -> 2 );
+        long now = System.currentTimeMillis();
+        DelayedOperation oldest = delay( "MATCH (n:A) WHERE n.x = 1 RETURN n", "Label(1)", 100, "x", now );
+        DelayedOperation other = delay( "MATCH (n:A) WHERE n.y = 1 RETURN n", "Label(1)", 100, "y", now );
+        DelayedOperation similar = delay( "MATCH (n:A) WHERE n.x = 2 RETURN n", "Label(1)", 100, "x", now );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( oldest, similar ) ) );
+        assertThat( transaction.delayed, contains( other ) );
+    }
+
+    @Test
+    void shouldFillABatchWithTheSameTemplateBeforeOtherQueriesOnTheSameFilter()
+    {
+        // given
+        allNodes( 100 );
+        transaction.setMaxBatchSize( () -> 2 );
+        long now = System.currentTimeMillis();
+        String template = "MATCH (n:A) WHERE n.x = $x RETURN n";
+        DelayedOperation oldest = delay( template, "Label(1)", 100, "x", now );
+        DelayedOperation sameFilter = delay( "MATCH (n:A) WHERE n.x > $x RETURN n.x", "Label(1)", 100, "x", now );
+        DelayedOperation sameTemplate = delay( template, "Label(1)", 100, "x", now );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( oldest, sameTemplate ) ) );
+        assertThat( transaction.delayed, contains( sameFilter ) );
+    }
+
+    @Test
+    void shouldBatchTheGroupWithTheEarliestDeadlineFirst()
+    {
+        // given
+        allNodes( 1000 );
+        DelayedOperation older = delay( "MATCH (n:A) RETURN n", "Label(1)", 10 );
+        DelayedOperation late = delay( "MATCH (n:B) RETURN n", "Label(2)", 10 );
+        DelayedOperation early = delay( "MATCH (n:C) RETURN n", "Label(3)", 10 );
+        late.deadline = System.currentTimeMillis() + 2_000;
+        early.deadline = System.currentTimeMillis() + 1_000;
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( early ) ) );
+        assertThat( transaction.delayed, contains( older, late ) );
+    }
+
+    @Test
+    void shouldFillABatchWithOperationsThatHaveADeadlineFirst()
+    {
+        // given
+        allNodes( 100 );
+        transaction.setMaxBatchSize( () -> 2 );
+        DelayedOperation first = delay( "MATCH (n:A) RETURN n", "Label(1)", 100 );
+        DelayedOperation second = delay( "MATCH (n:A) RETURN n.x", "Label(1)", 100 );
+        DelayedOperation urgent = delay( "MATCH (n:A) RETURN n.name", "Label(1)", 100 );
+        urgent.deadline = System.currentTimeMillis() + 1_000;
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( urgent, first ) ) );
+        assertThat( transaction.delayed, contains( second ) );
+    }
+
+    @Test
+    void shouldJoinAScanThatIsAlreadyRunning()
+    {
+        // given
+        allNodes( 1000 );
+        DelayedOperation running = delay( "MATCH (n:A) RETURN n", "Label(1)", 10 );
+        transaction.batchDelayed();
+
+        // when
+        DelayedOperation late = delay( "MATCH (n:A) RETURN n.x", "Label(1)", 10 );
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( running, late ) ) );
+        assertThat( transaction.delayed, empty() );
+    }
+
+    @Test
+    void shouldStartANewBatchWhenTheRunningScanIsFull()
+    {
+        // given
+        allNodes( 1000 );
+        transaction.setMaxBatchSize( () -> 1 );
+        DelayedOperation running = delay( "MATCH (n:A) RETURN n", "Label(1)", 10 );
+        transaction.batchDelayed();
+
+        // when
+        DelayedOperation late = delay( "MATCH (n:A) RETURN n.x", "Label(1)", 10 );
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( running ), List.of( late ) ) );
+    }
+
+    @Test
+    void shouldNotJoinARunningScanOnAnotherLabel()
+    {
+        // given
+        allNodes( 1000 );
+        DelayedOperation running = delay( "MATCH (n:A) RETURN n", "Label(1)", 10 );
+        transaction.batchDelayed();
+
+        // when
+        DelayedOperation late = delay( "MATCH (n:B) RETURN n", "Label(2)", 10 );
+        transaction.batchDelayed();
+
+        // then
+        assertThat( batches(), contains( List.of( running ), List.of( late ) ) );
+    }
+
+    private void allNodes( long count )
+    {
+        when( kernelTransaction.dataRead().countsForNode( TokenRead.ANY_LABEL ) ).thenReturn( count );
+    }
+
+    private DelayedOperation delay( String query, String scanKey, long scanCost )
+    {
+        return delay( query, scanKey, scanCost, null, System.currentTimeMillis() );
+    }
+
+    private DelayedOperation delay( String query, String scanKey, long scanCost, String filterKey, long arrivalTime )
+    {
+        Result result = mock( Result.class );
+        when( result.getQueryExecutionType() ).thenReturn( QueryExecutionType.query( READ_ONLY ) );
+        when( result.lazyScanKey() ).thenReturn( scanKey );
+        when( result.lazyScanCost() ).thenReturn( scanCost );
+        when( result.lazyFilterKey() ).thenReturn( filterKey );
+        when( result.lazyCanShareAllNodesScan() ).thenReturn( true );
+        when( result.joinSharedScan( any() ) ).thenReturn( true );
+        DelayedOperation op = new DelayedOperation( operations.start(), query, emptyMap(), result );
+        op.arrival_time = arrivalTime;
+        transaction.delay( op );
+        op.operations = operations;
+        return op;
+    }
+
+    private List<List<DelayedOperation>> batches()
+    {
+        List<List<DelayedOperation>> batches = new ArrayList<>();
+        for ( long i = transaction.batched.getOldest(); i < transaction.batched.getNewest(); i++ )
+        {
+            BatchedOperation batch = transaction.batched.get( i );
+            if ( batch != null )
+            {
+                batches.add( batch.batch );
+            }
+        }
+        return batches;
+    }
+}
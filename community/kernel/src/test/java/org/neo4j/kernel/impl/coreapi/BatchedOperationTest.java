@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.DelayedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry;
+
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.CANCELLED;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.FAILED;
+
+class BatchedOperationTest
+{
+    private final OperationRegistry operations = new OperationRegistry();
+
+    @Test
+    void shouldDropCancelledOperationsAtTheStrideBoundary() throws Exception
+    {
+        // given
+        DelayedOperation leader = operation( false );
+        DelayedOperation member = operation( false );
+        BatchedOperation batch = batch( leader, member );
+
+        // when the leader is cancelled
+        assertTrue( operations.cancel( leader.operation_num ) );
+        batch.propagate( 1 );
+
+        // then it leaves and lets go of its result, the next one leads
+        assertThat( batch.batch, contains( member ) );
+        verify( leader.result ).close();
+        verify( leader.result, never() ).lazyAccept( any() );
+        verify( member.result ).lazyAccept( any() );
+        verify( member.result, never() ).close();
+        assertEquals( CANCELLED, operations.operationTime( leader.operation_num ) );
+    }
+
+    @Test
+    void shouldDropOperationsOnceTheirTimeoutHasPassed() throws Exception
+    {
+        // given
+        DelayedOperation waiting = operation( false );
+        DelayedOperation late = operation( false );
+        BatchedOperation batch = batch( waiting, late );
+        long now = System.currentTimeMillis();
+        assertTrue( operations.timeout( waiting.operation_num, now + 60000 ) );
+        assertTrue( operations.timeout( late.operation_num, now - 1 ) );
+
+        // when
+        batch.propagate( 1 );
+
+        // then
+        assertThat( batch.batch, contains( waiting ) );
+        verify( late.result ).close();
+        assertEquals( CANCELLED, operations.operationTime( late.operation_num ) );
+        assertFalse( operations.finished( waiting.operation_num ) );
+    }
+
+    @Test
+    void shouldKeepOperationsUntilEveryDuplicateIsCancelled()
+    {
+        // given
+        DelayedOperation original = operation( false );
+        long duplicate = original.addDuplicate( operations.start() );
+        BatchedOperation batch = batch( original );
+
+        // when
+        operations.cancel( original.operation_num );
+        batch.propagate( 1 );
+
+        // then the duplicate still waits for its rows
+        assertThat( batch.batch, contains( original ) );
+
+        // when
+        operations.cancel( duplicate );
+        batch.propagate( 1 );
+
+        // then
+        assertThat( batch.batch, empty() );
+        verify( original.result ).close();
+    }
+
+    @Test
+    void shouldFinishOperationsThatComplete()
+    {
+        // given
+        DelayedOperation done = operation( true );
+        long duplicate = done.addDuplicate( operations.start() );
+        DelayedOperation running = operation( false );
+        BatchedOperation batch = batch( done, running );
+
+        // when
+        assertTrue( batch.propagate( 1 ) );
+
+        // then
+        assertThat( batch.batch, contains( running ) );
+        assertTrue( operations.finished( done.operation_num ) );
+        assertTrue( operations.finished( duplicate ) );
+        assertTrue( operations.operationTime( done.operation_num ) >= 0 );
+        assertFalse( operations.finished( running.operation_num ) );
+    }
+
+    @Test
+    void shouldFailEveryOperationOfAStrideThatThrew()
+    {
+        // given
+        DelayedOperation first = operation( false );
+        DelayedOperation second = operation( false );
+        first.collectRows();
+        second.collectRows();
+        BatchedOperation batch = batch( first, second );
+        RuntimeException failure = new RuntimeException( "stride failed" );
+
+        // when
+        batch.fail( failure );
+
+        // then
+        assertThat( batch.batch, empty() );
+        for ( DelayedOperation op : new DelayedOperation[] {first, second} )
+        {
+            ExecutionException e = assertThrows( ExecutionException.class, () -> op.completion.get() );
+            assertSame( failure, e.getCause() );
+            assertEquals( FAILED, operations.operationTime( op.operation_num ) );
+            assertSame( failure, operations.failure( op.operation_num ) );
+            verify( op.result ).close();
+        }
+    }
+
+    @Test
+    void shouldFailOnlyTheOperationWhoseStepThrew() throws Exception
+    {
+        // given
+        DelayedOperation failing = operation( false );
+        DelayedOperation member = operation( false );
+        RuntimeException failure = new RuntimeException( "query failed" );
+        when( failing.result.lazyAccept( any() ) ).thenThrow( failure );
+        BatchedOperation batch = batch( failing, member );
+
+        // when
+        assertTrue( batch.propagate( 1 ) );
+
+        // then it is kept as failed rather than completed, and the rest of the batch goes on
+        assertThat( batch.batch, contains( member ) );
+        assertTrue( operations.finished( failing.operation_num ) );
+        assertEquals( FAILED, operations.operationTime( failing.operation_num ) );
+        assertSame( failure, operations.failure( failing.operation_num ) );
+        assertEquals( 0, operations.completedSince( 0, System.currentTimeMillis() ) );
+        verify( failing.result ).close();
+        verify( member.result ).lazyAccept( any() );
+    }
+
+    // An operation of the registry whose result completes at its first step if complete, and never otherwise
+    private DelayedOperation operation( boolean complete )
+    {
+        Result result = mock( Result.class );
+        when( result.getQueryExecutionType() ).thenReturn( QueryExecutionType.query( READ_ONLY ) );
+        try
+        {
+            when( result.lazyAccept( any() ) ).thenReturn( complete );
+        }
+        catch ( Exception e )
+        {
+            throw new AssertionError( e );
+        }
+        DelayedOperation op = new DelayedOperation( operations.start(), "MATCH (n) RETURN n", emptyMap(), result );
+        op.operations = operations;
+        return op;
+    }
+
+    private static BatchedOperation batch( DelayedOperation... members )
+    {
+        ArrayList<DelayedOperation> operations = new ArrayList<>();
+        for ( DelayedOperation member : members )
+        {
+            operations.add( member );
+        }
+        return new BatchedOperation( operations, null );
+    }
+}
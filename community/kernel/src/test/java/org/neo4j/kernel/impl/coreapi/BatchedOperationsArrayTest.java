@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperationsArray;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.DelayedOperation;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperationsArray.CAPACITY;
+
+class BatchedOperationsArrayTest
+{
+    private final BatchedOperationsArray batched = new BatchedOperationsArray();
+    private final Result result = readOnlyResult();
+
+    @Test
+    void shouldGiveBatchesConsecutiveIndices()
+    {
+        // given
+        BatchedOperation first = batch();
+        BatchedOperation second = batch();
+
+        // when
+        assertTrue( batched.add( first ) );
+        assertTrue( batched.add( second ) );
+
+        // then
+        assertEquals( 0, first.index );
+        assertEquals( 1, second.index );
+        assertSame( first, batched.get( 0 ) );
+        assertSame( second, batched.get( 1 ) );
+        assertNull( batched.get( 2 ) );
+        assertEquals( 2, batched.size() );
+        assertEquals( 0, batched.getOldest() );
+        assertEquals( 2, batched.getNewest() );
+    }
+
+    @Test
+    void shouldOnlyMoveOldestPastRemovedBatches()
+    {
+        // given
+        for ( int i = 0; i < 3; i++ )
+        {
+            batched.add( batch() );
+        }
+
+        // when a batch finishes before an older one
+        batched.remove( 1 );
+
+        // then
+        assertNull( batched.get( 1 ) );
+        assertEquals( 0, batched.getOldest() );
+        assertEquals( 2, batched.size() );
+
+        // when the older one finishes as well
+        batched.remove( 0 );
+
+        // then
+        assertEquals( 2, batched.getOldest() );
+        assertEquals( 1, batched.size() );
+    }
+
+    @Test
+    void shouldIgnoreRemovingBatchesTwice()
+    {
+        // given
+        batched.add( batch() );
+        batched.add( batch() );
+        batched.remove( 0 );
+
+        // when
+        batched.remove( 0 );
+
+        // then
+        assertEquals( 1, batched.size() );
+        assertEquals( 1, batched.getOldest() );
+    }
+
+    @Test
+    void shouldRefuseBatchesWhileFull()
+    {
+        // given
+        for ( int i = 0; i < CAPACITY; i++ )
+        {
+            assertTrue( batched.add( batch() ) );
+        }
+
+        // then
+        assertTrue( batched.isFull() );
+        assertFalse( batched.add( batch() ) );
+
+        // when a batch other than the oldest finishes
+        batched.remove( 1 );
+
+        // then the oldest still holds its slot
+        assertTrue( batched.isFull() );
+        assertFalse( batched.add( batch() ) );
+
+        // when the oldest finishes
+        batched.remove( 0 );
+
+        // then both slots are free for the next lap
+        assertFalse( batched.isFull() );
+        BatchedOperation next = batch();
+        assertTrue( batched.add( next ) );
+        assertEquals( CAPACITY, next.index );
+        assertSame( next, batched.get( CAPACITY ) );
+        assertNull( batched.get( 0 ) );
+        assertTrue( batched.add( batch() ) );
+        assertTrue( batched.isFull() );
+    }
+
+    @Test
+    void shouldKeepIndicesGoingAroundTheRing()
+    {
+        // given
+        BatchedOperation previous = batch();
+        batched.add( previous );
+
+        // when
+        for ( long i = 1; i < 3L * CAPACITY; i++ )
+        {
+            BatchedOperation current = batch();
+            assertTrue( batched.add( current ) );
+            assertEquals( i, current.index );
+            batched.remove( previous.index );
+            previous = current;
+        }
+
+        // then
+        assertEquals( 1, batched.size() );
+        assertEquals( previous.index, batched.getOldest() );
+        assertSame( previous, batched.get( previous.index ) );
+        assertNull( batched.get( previous.index - CAPACITY ) );
+    }
+
+    private BatchedOperation batch()
+    {
+        ArrayList<DelayedOperation> operations = new ArrayList<>();
+        operations.add( new DelayedOperation( 0, "MATCH (n) RETURN n", emptyMap(), result ) );
+        return new BatchedOperation( operations, null );
+    }
+
+    private static Result readOnlyResult()
+    {
+        Result result = mock( Result.class );
+        when( result.getQueryExecutionType() ).thenReturn( QueryExecutionType.query( READ_ONLY ) );
+        return result;
+    }
+}
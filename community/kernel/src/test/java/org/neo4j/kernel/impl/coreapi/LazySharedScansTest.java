@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+class LazySharedScansTest
+{
+    private final LazySharedScans scans = new LazySharedScans();
+
+    @Test
+    void shouldFindRegisteredScansByKey()
+    {
+        // given
+        Scan first = new Scan( "Label(1)" );
+        Scan second = new Scan( "Label(1)" );
+        Scan other = new Scan( "Label(2)" );
+
+        // when
+        scans.register( first );
+        scans.register( second );
+        scans.register( other );
+
+        // then
+        assertThat( scans.running( "Label(1)" ), containsInAnyOrder( first, second ) );
+        assertThat( scans.running( "Label(2)" ), contains( other ) );
+        assertThat( scans.running( "Label(3)" ), empty() );
+    }
+
+    @Test
+    void shouldNotFindScansOnceUnregistered()
+    {
+        // given
+        Scan first = new Scan( "Label(1)" );
+        Scan second = new Scan( "Label(1)" );
+        scans.register( first );
+        scans.register( second );
+
+        // when
+        scans.unregister( first );
+
+        // then
+        assertThat( scans.running( "Label(1)" ), contains( second ) );
+
+        // when
+        scans.unregister( second );
+
+        // then
+        assertThat( scans.running( "Label(1)" ), empty() );
+    }
+
+    @Test
+    void shouldIgnoreUnregisteringScansThatAreNotRunning()
+    {
+        // given
+        Scan running = new Scan( "Label(1)" );
+        scans.register( running );
+
+        // when
+        scans.unregister( new Scan( "Label(1)" ) );
+        scans.unregister( new Scan( "Label(2)" ) );
+
+        // then
+        assertThat( scans.running( "Label(1)" ), contains( running ) );
+        assertThat( scans.running( "Label(2)" ), empty() );
+    }
+
+    private static class Scan implements LazySharedScans.SharedScan
+    {
+        private final String key;
+
+        Scan( String key )
+        {
+            this.key = key;
+        }
+
+        @Override
+        public String scanKey()
+        {
+            return key;
+        }
+    }
+}
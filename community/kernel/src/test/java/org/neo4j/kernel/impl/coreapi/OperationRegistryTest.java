@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.Test;
+
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.CANCELLED;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.FAILED;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.FORGOTTEN;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.NOT_FINISHED;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.NOT_STARTED;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry.RECENT;
+
+class OperationRegistryTest
+{
+    private final OperationRegistry operations = new OperationRegistry();
+
+    @Test
+    void shouldAllocateConsecutiveIds()
+    {
+        assertEquals( 0, operations.start() );
+        assertEquals( 1, operations.start() );
+        assertEquals( 2, operations.start() );
+    }
+
+    @Test
+    void shouldKnowWhetherOperationsAreRunning()
+    {
+        // given
+        long operation = operations.start();
+
+        // then
+        assertFalse( operations.finished( operation ) );
+        assertEquals( NOT_FINISHED, operations.operationTime( operation ) );
+        assertEquals( NOT_STARTED, operations.operationTime( operation + 1 ) );
+
+        // when
+        operations.finish( operation );
+
+        // then
+        assertTrue( operations.finished( operation ) );
+        assertTrue( operations.operationTime( operation ) >= 0 );
+        assertFalse( operations.finished( operation + 1 ) );
+    }
+
+    @Test
+    void shouldCountLatenciesInPowerOfTwoBuckets()
+    {
+        // given
+        for ( int i = 0; i < 3; i++ )
+        {
+            operations.finish( startedAgo( 2 ) );
+        }
+        operations.finish( startedAgo( 100 ) );
+
+        // then 2 ms falls in the bucket of 2 to 3 ms and 100 ms in the one of 64 to 127 ms
+        assertEquals( 3, operations.latencyPercentile( 0.5 ) );
+        assertEquals( 3, operations.latencyPercentile( 0.75 ) );
+        assertEquals( 127, operations.latencyPercentile( 0.99 ) );
+        assertEquals( 127, operations.latencyPercentile( 1.0 ) );
+    }
+
+    @Test
+    void shouldHaveNoLatencyPercentileBeforeAnyOperationFinished()
+    {
+        operations.start();
+        assertEquals( 0, operations.latencyPercentile( 0.99 ) );
+    }
+
+    @Test
+    void shouldForgetTheTimeOfAnOperationOnceItsSlotIsReused()
+    {
+        // given
+        long first = startedAgo( 5 );
+        operations.finish( first );
+        long time = operations.operationTime( first );
+
+        // when the operation a whole ring later finishes in the same slot
+        operations.next_operation_num.set( first + RECENT );
+        long later = startedAgo( 7 );
+        operations.finish( later );
+
+        // then
+        assertTrue( time >= 5 );
+        assertEquals( FORGOTTEN, operations.operationTime( first ) );
+        assertTrue( operations.operationTime( later ) >= 7 );
+    }
+
+    @Test
+    void shouldCountCompletionsInTheirTimeWindow()
+    {
+        // given
+        long now = System.currentTimeMillis();
+        operations.finish( operations.start() );
+        operations.finish( operations.start() );
+        operations.cancel( operations.start() );
+
+        // then cancelled operations don't count
+        assertEquals( 2, operations.completedSince( now - 1000, System.currentTimeMillis() ) );
+        assertEquals( 0, operations.completedSince( now - 20000, now - 10000 ) );
+    }
+
+    @Test
+    void shouldCancelRunningOperationsOnce()
+    {
+        // given
+        long operation = operations.start();
+
+        // then
+        assertTrue( operations.cancel( operation ) );
+        assertFalse( operations.cancel( operation ) );
+        assertTrue( operations.finished( operation ) );
+        assertEquals( CANCELLED, operations.operationTime( operation ) );
+
+        // when finishing it anyway
+        operations.finish( operation );
+
+        // then it stays cancelled
+        assertEquals( CANCELLED, operations.operationTime( operation ) );
+        assertEquals( 0, operations.latencyPercentile( 1.0 ) );
+    }
+
+    @Test
+    void shouldKeepWhyOperationsFailed()
+    {
+        // given
+        long operation = operations.start();
+        long other = operations.start();
+        RuntimeException failure = new RuntimeException( "failed" );
+
+        // when
+        assertTrue( operations.fail( operation, failure ) );
+        operations.finish( other );
+
+        // then
+        assertFalse( operations.fail( operation, failure ) );
+        assertTrue( operations.finished( operation ) );
+        assertEquals( FAILED, operations.operationTime( operation ) );
+        assertSame( failure, operations.failure( operation ) );
+        assertNull( operations.failure( other ) );
+        assertEquals( 1, operations.completedSince( 0, System.currentTimeMillis() ) );
+    }
+
+    @Test
+    void shouldNotCancelFinishedOperations()
+    {
+        // given
+        long operation = operations.start();
+        operations.finish( operation );
+
+        // then
+        assertFalse( operations.cancel( operation ) );
+        assertFalse( operations.timeout( operation, System.currentTimeMillis() ) );
+        assertTrue( operations.operationTime( operation ) >= 0 );
+    }
+
+    @Test
+    void shouldAbandonOperationsOnceTheirTimeoutHasPassed()
+    {
+        // given
+        long operation = operations.start();
+        long now = System.currentTimeMillis();
+        assertTrue( operations.timeout( operation, now + 1000 ) );
+
+        // then
+        assertFalse( operations.abandoned( operation, now ) );
+        assertFalse( operations.finished( operation ) );
+        assertTrue( operations.abandoned( operation, now + 1000 ) );
+        assertEquals( CANCELLED, operations.operationTime( operation ) );
+    }
+
+    @Test
+    void shouldNotTimeOutOperationsThatFinishInTime()
+    {
+        // given
+        long operation = operations.start();
+        long now = System.currentTimeMillis();
+        operations.timeout( operation, now + 1000 );
+
+        // when
+        operations.finish( operation );
+
+        // then it no longer runs, but wasn't cancelled
+        assertTrue( operations.abandoned( operation, now + 1000 ) );
+        assertTrue( operations.operationTime( operation ) >= 0 );
+    }
+
+    // Starts an operation as if it had been started ms ago
+    private long startedAgo( long ms )
+    {
+        long operation = operations.start();
+        operations.running.put( operation, System.currentTimeMillis() - ms );
+        return operation;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.DelayedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.PropagationScheduler;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
+import static org.neo4j.kernel.impl.coreapi.TransactionImpl.NO_DEADLINE;
+
+class PropagationSchedulerTest
+{
+    private static final int STRIDE = 2;
+
+    private final Result result = readOnlyResult();
+    private final List<BatchedOperation> finished = new ArrayList<>();
+    private final PropagationScheduler scheduler = new PropagationScheduler( 2, () -> STRIDE, finished::add );
+
+    @Test
+    void shouldHoldBackABatchUntilItsPredecessorIsAStrideAhead()
+    {
+        // given
+        BatchedOperation first = batch( NO_DEADLINE );
+        BatchedOperation second = batch( NO_DEADLINE );
+        scheduler.submit( first );
+        scheduler.submit( second );
+
+        // then
+        assertSame( first, scheduler.poll( 0 ) );
+        assertNull( scheduler.poll( 0 ) );
+        assertNull( scheduler.poll( 1 ) );
+
+        // when the first one propagated less than a stride
+        first.num_times_propagated = STRIDE - 1;
+        scheduler.strideDone( first, 0 );
+
+        // then
+        assertSame( first, scheduler.poll( 0 ) );
+        assertNull( scheduler.poll( 1 ) );
+
+        // when it is a stride ahead
+        first.num_times_propagated = STRIDE;
+        scheduler.strideDone( first, 0 );
+
+        // then both are ready
+        assertSame( first, scheduler.poll( 0 ) );
+        assertSame( second, scheduler.poll( 0 ) );
+    }
+
+    @Test
+    void shouldReleaseTheSuccessorOfAFinishedBatch()
+    {
+        // given
+        BatchedOperation first = batch( NO_DEADLINE );
+        BatchedOperation second = batch( NO_DEADLINE );
+        scheduler.submit( first );
+        scheduler.submit( second );
+        assertSame( first, scheduler.poll( 0 ) );
+
+        // when
+        first.batch.clear();
+        scheduler.strideDone( first, 0 );
+
+        // then
+        assertTrue( first.finished );
+        assertEquals( List.of( first ), finished );
+        assertNull( second.predecessor );
+        assertSame( second, scheduler.poll( 0 ) );
+        assertNull( scheduler.poll( 0 ) );
+    }
+
+    @Test
+    void shouldStealFromOtherWorkersWhenItsOwnDequeIsEmpty()
+    {
+        // given
+        BatchedOperation first = batch( NO_DEADLINE );
+        scheduler.submit( first );
+
+        // then
+        assertSame( first, scheduler.poll( 1 ) );
+        assertNull( scheduler.poll( 0 ) );
+    }
+
+    @Test
+    void shouldTakeBatchesByEarliestDeadlineBeforeBatchesWithout()
+    {
+        // given batches whose predecessors are already a stride ahead
+        BatchedOperation background = batch( NO_DEADLINE );
+        BatchedOperation late = batch( 200 );
+        BatchedOperation early = batch( 100 );
+        submitUnblocked( background );
+        submitUnblocked( late );
+        submitUnblocked( early );
+
+        // then
+        assertSame( early, scheduler.poll( 0 ) );
+        assertSame( late, scheduler.poll( 0 ) );
+        assertSame( background, scheduler.poll( 0 ) );
+    }
+
+    @Test
+    void shouldLendADeadlineToThePredecessorHoldingItUp()
+    {
+        // given
+        BatchedOperation background = batch( NO_DEADLINE );
+        BatchedOperation urgent = batch( 100 );
+        scheduler.submit( background );
+        scheduler.submit( urgent );
+        assertSame( background, scheduler.poll( 0 ) );
+
+        // when
+        background.num_times_propagated = 1;
+        scheduler.strideDone( background, 0 );
+
+        // then the predecessor is scheduled with the deadline of the batch waiting on it
+        assertTrue( urgent.waiting );
+        assertEquals( 100, background.scheduled_deadline );
+        assertSame( background, scheduler.poll( 1 ) );
+    }
+
+    @Test
+    void shouldParkIdleWorkersUntilABatchIsReady() throws Exception
+    {
+        // given
+        CompletableFuture<BatchedOperation> taken = CompletableFuture.supplyAsync( () -> scheduler.take( 0 ) );
+        while ( scheduler.idle.get() == 0 )
+        {
+            Thread.onSpinWait();
+        }
+        assertFalse( taken.isDone() );
+
+        // when
+        BatchedOperation first = batch( NO_DEADLINE );
+        scheduler.submit( first );
+
+        // then
+        assertSame( first, taken.get( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    void shouldReturnParkedWorkersOnceStopped() throws Exception
+    {
+        // given
+        CompletableFuture<BatchedOperation> taken = CompletableFuture.supplyAsync( () -> scheduler.take( 0 ) );
+        while ( scheduler.idle.get() == 0 )
+        {
+            Thread.onSpinWait();
+        }
+
+        // when
+        scheduler.stop();
+
+        // then
+        assertNull( taken.get( 10, TimeUnit.SECONDS ) );
+        assertFalse( scheduler.running() );
+    }
+
+    private void submitUnblocked( BatchedOperation batch )
+    {
+        if ( scheduler.last != null )
+        {
+            scheduler.last.num_times_propagated = STRIDE;
+        }
+        scheduler.submit( batch );
+    }
+
+    private BatchedOperation batch( long deadline )
+    {
+        ArrayList<DelayedOperation> operations = new ArrayList<>();
+        DelayedOperation op = new DelayedOperation( 0, "MATCH (n) RETURN n", emptyMap(), result );
+        op.deadline = deadline;
+        operations.add( op );
+        return new BatchedOperation( operations, null );
+    }
+
+    private static Result readOnlyResult()
+    {
+        Result result = mock( Result.class );
+        when( result.getQueryExecutionType() ).thenReturn( QueryExecutionType.query( READ_ONLY ) );
+        return result;
+    }
+}
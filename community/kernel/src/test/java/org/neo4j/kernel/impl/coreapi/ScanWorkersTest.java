@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.QueryExecutionType.QueryType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.DelayedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry;
+
+import static java.util.Collections.emptyMap;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_WRITE;
+
+class ScanWorkersTest
+{
+    private final KernelTransaction kernelTransaction =
+            mock( KernelTransaction.class, withSettings().extraInterfaces( TxStateHolder.class ).defaultAnswer( RETURNS_DEEP_STUBS ) );
+    private final TransactionImpl transaction = new TransactionImpl( null, null, null, null, kernelTransaction );
+
+    @AfterEach
+    void tearDown()
+    {
+        transaction.shutdownThreadPool();
+    }
+
+    @Test
+    void shouldSplitTheScanOfAReadOnlyBatch()
+    {
+        // given
+        transaction.setScanPartitions( () -> 2 );
+        Result result = delay( READ_ONLY );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        verify( result ).prepareSharedScan( any(), eq( 2 ), any() );
+    }
+
+    @Test
+    void shouldNotSplitTheScanOfABatchThatWrites()
+    {
+        // given
+        transaction.setScanPartitions( () -> 2 );
+        Result result = delay( READ_WRITE );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        verify( result ).prepareSharedScan( any(), eq( 1 ), any() );
+    }
+
+    @Test
+    void shouldNotSplitTheScanOfATransactionWithChanges()
+    {
+        // given
+        transaction.setScanPartitions( () -> 2 );
+        when( ((TxStateHolder) kernelTransaction).hasTxStateWithChanges() ).thenReturn( true );
+        Result result = delay( READ_ONLY );
+
+        // when
+        transaction.batchDelayed();
+
+        // then
+        verify( result ).prepareSharedScan( any(), eq( 1 ), any() );
+    }
+
+    @Test
+    void shouldNotSplitScansBeyondTheWorkersLeft()
+    {
+        // given every worker is reserved by the first batch
+        transaction.setScanPartitions( () -> TransactionImpl.MAX_SCAN_WORKERS );
+        Result first = delay( READ_ONLY );
+        transaction.batchDelayed();
+        verify( first ).prepareSharedScan( any(), eq( TransactionImpl.MAX_SCAN_WORKERS ), any() );
+
+        // when
+        Result second = delay( READ_ONLY );
+        transaction.batchDelayed();
+
+        // then
+        verify( second ).prepareSharedScan( any(), eq( 1 ), any() );
+    }
+
+    private Result delay( QueryType type )
+    {
+        Result result = mock( Result.class );
+        when( result.getQueryExecutionType() ).thenReturn( QueryExecutionType.query( type ) );
+        when( result.lazyScanKey() ).thenReturn( "Label(1)" );
+        OperationRegistry operations = new OperationRegistry();
+        DelayedOperation op = new DelayedOperation( operations.start(), "MATCH (n:A) RETURN n", emptyMap(), result );
+        op.operations = operations;
+        // Due now, so it is batched without waiting for partners
+        op.deadline = System.currentTimeMillis();
+        transaction.delayed.add( op );
+        return result;
+    }
+}
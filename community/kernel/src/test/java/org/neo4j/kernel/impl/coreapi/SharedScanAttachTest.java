@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.coreapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.BatchedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.DelayedOperation;
+import org.neo4j.kernel.impl.coreapi.TransactionImpl.OperationRegistry;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.neo4j.graphdb.QueryExecutionType.QueryType.READ_ONLY;
+
+class SharedScanAttachTest
+{
+    private static final String SCAN = "Label(1)";
+
+    private final LazySharedScans scans = new LazySharedScans();
+    private final TransactionImpl owner = transaction();
+    private final TransactionImpl other = transaction();
+
+    @AfterEach
+    void tearDown()
+    {
+        owner.stopPropagation();
+    }
+
+    @Test
+    void shouldNotAttachToAScanWhoseOwnerHasNoPropagationWorkers()
+    {
+        // given
+        BatchedOperation running = sharedScan();
+
+        // when
+        DelayedOperation op = delay( other );
+        other.batchDelayed();
+
+        // then
+        assertFalse( running.batch.contains( op ) );
+        assertNull( op.attached_to );
+    }
+
+    @Test
+    void shouldAttachToAScanWhoseOwnerHasPropagationWorkers()
+    {
+        // given
+        owner.startPropagation();
+        BatchedOperation running = sharedScan();
+
+        // when
+        DelayedOperation op = delay( other );
+        other.batchDelayed();
+
+        // then
+        assertTrue( running.batch.contains( op ) );
+        assertSame( running, op.attached_to );
+    }
+
+    @Test
+    void shouldFailAttachedOperationsOnceTheOwnerStopsPropagating()
+    {
+        // given
+        owner.startPropagation();
+        BatchedOperation running = sharedScan();
+        DelayedOperation op = delay( other );
+        other.batchDelayed();
+        assertTrue( running.batch.contains( op ) );
+
+        // when
+        owner.stopPropagation();
+
+        // then
+        assertFalse( running.batch.contains( op ) );
+        assertFalse( running.shared );
+        ExecutionException failure = assertThrows( ExecutionException.class, op.completion::get );
+        assertTrue( failure.getCause() instanceof IllegalStateException );
+    }
+
+    private BatchedOperation sharedScan()
+    {
+        // Added without submitting it, so no worker steps it while the test looks at it
+        ArrayList<DelayedOperation> batch = new ArrayList<>();
+        batch.add( new DelayedOperation( 0, "MATCH (n:A) RETURN n", emptyMap(), readOnlyResult() ) );
+        BatchedOperation running = new BatchedOperation( batch, owner );
+        assertTrue( owner.batched.add( running ) );
+        running.shared = true;
+        scans.register( running );
+        return running;
+    }
+
+    private static DelayedOperation delay( TransactionImpl transaction )
+    {
+        OperationRegistry operations = new OperationRegistry();
+        DelayedOperation op = new DelayedOperation( operations.start(), "MATCH (n:A) RETURN n", emptyMap(), readOnlyResult() );
+        op.operations = operations;
+        transaction.delayed.add( op );
+        return op;
+    }
+
+    private TransactionImpl transaction()
+    {
+        return new TransactionImpl( null, null, null, null, mock( KernelTransaction.class, RETURNS_DEEP_STUBS ), scans );
+    }
+
+    private static Result readOnlyResult()
+    {
+        Result result = mock( Result.class );
+        when( result.getQueryExecutionType() ).thenReturn( QueryExecutionType.query( READ_ONLY ) );
+        when( result.lazyScanKey() ).thenReturn( SCAN );
+        when( result.joinSharedScan( any() ) ).thenReturn( true );
+        return result;
+    }
+}